@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.experimental.categories.Categories.CategoryFilter;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+/**
+ * Macro benchmark that runs a large {@link SyntheticSuite} with different test group selections, once with
+ * {@link TestGroupRule} and once with JUnit's {@code Categories} filter. Each run is a separate JVM, so class loading
+ * and heap usage are measured from scratch. Usage (all arguments are optional):
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.github.ferstl.junit.testgroups.SuiteHarness \
+ *   classes=20000 groups=20 packages=200 methods=5 runs=3 \
+ *   selections=group0;group0,group1,group2;all \
+ *   directory=target/synthetic-suite jvmArgs=-Xmx2g
+ * </pre>
+ *
+ * The selection {@code all} runs all test groups. The reported values are the medians of all runs.
+ */
+public final class SuiteHarness {
+
+  private static final String RESULT_PREFIX = "RESULT ";
+
+  private SuiteHarness() {
+    throw new AssertionError("not instantiable");
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && "run".equals(args[0])) {
+      runInThisJvm(args);
+      return;
+    }
+
+    Map<String, String> options = new LinkedHashMap<>();
+    options.put("classes", "20000");
+    options.put("groups", "20");
+    options.put("packages", "200");
+    options.put("methods", "5");
+    options.put("runs", "3");
+    options.put("selections", "group0;group0,group1,group2;all");
+    options.put("directory", "target/synthetic-suite");
+    options.put("jvmArgs", "");
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (separator < 0 || !options.containsKey(arg.substring(0, separator))) {
+        throw new IllegalArgumentException("Unknown argument: " + arg + ". Valid arguments: " + options.keySet());
+      }
+      options.put(arg.substring(0, separator), arg.substring(separator + 1));
+    }
+
+    File directory = new File(options.get("directory"));
+    SyntheticSuite suite = new SyntheticSuite(directory, Integer.parseInt(options.get("classes")),
+        Integer.parseInt(options.get("groups")), Integer.parseInt(options.get("packages")), Integer.parseInt(options.get("methods")));
+    long start = System.nanoTime();
+    suite.create();
+    System.out.println("Synthetic suite ready in " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + "s: " + directory);
+
+    int runs = Integer.parseInt(options.get("runs"));
+    System.out.println(String.format("%-10s %-24s %8s %8s %10s %10s %8s %10s %10s",
+        "variant", "selection", "tests", "ignored", "wall[ms]", "load[ms]", "classes", "heap[MB]", "alloc[MB]"));
+    for (String selection : options.get("selections").split(";")) {
+      for (String variant : Arrays.asList(SyntheticSuite.RULE_VARIANT, SyntheticSuite.CATEGORIES_VARIANT)) {
+        List<long[]> results = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+          results.add(fork(options, suite, variant, selection));
+        }
+        long[] median = median(results);
+        System.out.println(String.format("%-10s %-24s %8d %8d %10d %10d %8d %10d %10d", variant, selection, median[0], median[1],
+            median[2], median[3], median[4], median[5] >> 20, median[6] >> 20));
+      }
+    }
+  }
+
+  private static long[] fork(Map<String, String> options, SyntheticSuite suite, String variant, String selection) throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+    command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+    for (String jvmArg : options.get("jvmArgs").split(" ")) {
+      if (!jvmArg.isEmpty()) {
+        command.add(jvmArg);
+      }
+    }
+    // The suite must be on the class path. JUnit resolves the test classes of some descriptions with its own class loader.
+    String classpath = System.getProperty("java.class.path") + File.pathSeparator + suite.getClassesDirectory().getPath();
+    command.addAll(Arrays.asList("-cp", classpath, SuiteHarness.class.getName(), "run",
+        options.get("directory"), options.get("classes"), options.get("groups"), options.get("packages"), options.get("methods"),
+        variant, selection));
+
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    long[] result = null;
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(RESULT_PREFIX)) {
+          String[] values = line.substring(RESULT_PREFIX.length()).split(" ");
+          result = new long[values.length];
+          for (int i = 0; i < values.length; i++) {
+            result[i] = Long.parseLong(values[i]);
+          }
+        }
+      }
+    }
+
+    if (process.waitFor() != 0 || result == null) {
+      throw new IllegalStateException("Run of " + variant + " with selection " + selection + " failed: " + command);
+    }
+
+    return result;
+  }
+
+  /**
+   * Runs the suite in this JVM and prints the measurements as a single line.
+   */
+  private static void runInThisJvm(String[] args) throws Exception {
+    SyntheticSuite suite = new SyntheticSuite(new File(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+        Integer.parseInt(args[4]), Integer.parseInt(args[5]));
+    String variant = args[6];
+    String selection = args[7];
+    boolean rule = SyntheticSuite.RULE_VARIANT.equals(variant);
+
+    // With the categories variant, TestGroupRule is not on any test class.
+    System.setProperty(TestGroup.DEFAULT_KEY, rule ? selection : TestGroup.ALL_GROUPS);
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+        heapPools.add(pool);
+      }
+    }
+    int loadedClassesBefore = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+    long allocatedBefore = allocatedBytes(threadMXBean);
+    long start = System.nanoTime();
+
+    ClassLoader loader = SuiteHarness.class.getClassLoader();
+    List<String> names = suite.getTestClasses(variant);
+    Class<?>[] testClasses = new Class<?>[names.size()];
+    for (int i = 0; i < testClasses.length; i++) {
+      testClasses[i] = Class.forName(names.get(i), true, loader);
+    }
+    long loaded = System.nanoTime();
+
+    Request request = Request.classes(testClasses);
+    if (!rule && !TestGroup.ALL_GROUPS.equals(selection)) {
+      List<Class<?>> categories = new ArrayList<>();
+      for (String group : TestGroupDecisions.split(selection)) {
+        categories.add(Class.forName(SyntheticSuite.categoryName(group), false, loader));
+      }
+      request = request.filterWith(CategoryFilter.include(true, categories.toArray(new Class<?>[categories.size()])));
+    }
+    Result result = new JUnitCore().run(request);
+    long end = System.nanoTime();
+
+    for (Failure failure : result.getFailures()) {
+      System.err.println(failure + "\n" + failure.getTrace());
+    }
+
+    long heapPeak = 0;
+    for (MemoryPoolMXBean pool : heapPools) {
+      heapPeak += pool.getPeakUsage().getUsed();
+    }
+
+    System.out.println(RESULT_PREFIX + result.getRunCount() + " " + result.getIgnoreCount()
+        + " " + TimeUnit.NANOSECONDS.toMillis(end - start)
+        + " " + TimeUnit.NANOSECONDS.toMillis(loaded - start)
+        + " " + (ManagementFactory.getClassLoadingMXBean().getLoadedClassCount() - loadedClassesBefore)
+        + " " + heapPeak
+        + " " + (allocatedBytes(threadMXBean) - allocatedBefore));
+    System.exit(result.getFailureCount() == 0 ? 0 : 1);
+  }
+
+  private static long allocatedBytes(ThreadMXBean threadMXBean) {
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+      if (allocationMXBean.isThreadAllocatedMemorySupported() && allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+        return allocationMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+
+    return 0;
+  }
+
+  private static long[] median(List<long[]> results) {
+    long[] median = new long[results.get(0).length];
+    for (int i = 0; i < median.length; i++) {
+      long[] values = new long[results.size()];
+      for (int j = 0; j < values.length; j++) {
+        values[j] = results.get(j)[i];
+      }
+      Arrays.sort(values);
+      median[i] = values[values.length / 2];
+    }
+
+    return median;
+  }
+}
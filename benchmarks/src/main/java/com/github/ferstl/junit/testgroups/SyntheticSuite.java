@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates and compiles a synthetic test suite. Each test class exists in two variants with the same test group:
+ * <ul>
+ * <li>{@value #RULE_VARIANT}: grouped with {@link TestGroup} and {@link TestGroupRule}. Every fourth package declares
+ * its test group in {@code package-info.java}.</li>
+ * <li>{@value #CATEGORIES_VARIANT}: grouped with JUnit's {@code @Category} annotation.</li>
+ * </ul>
+ * Every tenth test class uses the {@code Parameterized} runner and every tenth test class (shifted by five) uses the
+ * {@code Theories} runner.
+ */
+final class SyntheticSuite {
+
+  static final String RULE_VARIANT = "rule";
+  static final String CATEGORIES_VARIANT = "categories";
+
+  private static final String BASE_PACKAGE = "synthetic";
+  private static final String DESCRIPTOR = "suite.properties";
+  private static final int COMPILE_BATCH_SIZE = 2000;
+
+  private final File directory;
+  private final int classes;
+  private final int groups;
+  private final int packages;
+  private final int methods;
+
+  SyntheticSuite(File directory, int classes, int groups, int packages, int methods) {
+    this.directory = directory;
+    this.classes = classes;
+    this.groups = groups;
+    this.packages = packages;
+    this.methods = methods;
+  }
+
+  File getClassesDirectory() {
+    return new File(this.directory, "classes");
+  }
+
+  /**
+   * Returns the names of all test classes of the given variant.
+   */
+  List<String> getTestClasses(String variant) {
+    List<String> testClasses = new ArrayList<>(this.classes);
+    for (int i = 0; i < this.classes; i++) {
+      testClasses.add(packageName(variant, i % this.packages) + ".Synthetic" + i + "Test");
+    }
+
+    return testClasses;
+  }
+
+  /**
+   * Returns the name of the category interface for the given test group.
+   */
+  static String categoryName(String group) {
+    return BASE_PACKAGE + ".categories." + Character.toUpperCase(group.charAt(0)) + group.substring(1);
+  }
+
+  /**
+   * Generates and compiles the suite unless it already exists with the same parameters.
+   */
+  void create() throws IOException {
+    Properties descriptor = descriptor();
+    File descriptorFile = new File(this.directory, DESCRIPTOR);
+    if (descriptorFile.isFile()) {
+      Properties existing = new Properties();
+      try (InputStream is = Files.newInputStream(descriptorFile.toPath())) {
+        existing.load(is);
+      }
+      if (existing.equals(descriptor)) {
+        return;
+      }
+    }
+
+    File sources = new File(this.directory, "sources");
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < this.groups; i++) {
+      String name = categoryName(group(i));
+      files.add(write(sources, name, "package " + packageOf(name) + ";\n\npublic interface " + simpleName(name) + " {}\n"));
+    }
+    for (int p = 0; p < this.packages; p++) {
+      if (hasPackageGroup(p)) {
+        String packageName = packageName(RULE_VARIANT, p);
+        files.add(write(sources, packageName + ".package-info", "@com.github.ferstl.junit.testgroups.TestGroup(\""
+            + group(p) + "\")\npackage " + packageName + ";\n"));
+      }
+    }
+    for (int i = 0; i < this.classes; i++) {
+      files.add(write(sources, packageName(RULE_VARIANT, i % this.packages) + ".Synthetic" + i + "Test", testClass(RULE_VARIANT, i)));
+      files.add(write(sources, packageName(CATEGORIES_VARIANT, i % this.packages) + ".Synthetic" + i + "Test", testClass(CATEGORIES_VARIANT, i)));
+    }
+
+    compile(files);
+
+    try (OutputStream os = Files.newOutputStream(descriptorFile.toPath())) {
+      descriptor.store(os, "Synthetic test suite");
+    }
+  }
+
+  /**
+   * Returns the test group of the given test class.
+   */
+  String groupOf(int testClass) {
+    int p = testClass % this.packages;
+    return hasPackageGroup(p) ? group(p) : group(testClass);
+  }
+
+  private String group(int index) {
+    return "group" + (index % this.groups);
+  }
+
+  private static boolean hasPackageGroup(int packageIndex) {
+    return packageIndex % 4 == 0;
+  }
+
+  private static String packageName(String variant, int packageIndex) {
+    return BASE_PACKAGE + "." + variant + ".p" + packageIndex;
+  }
+
+  private String testClass(String variant, int index) {
+    boolean rule = RULE_VARIANT.equals(variant);
+    boolean parameterized = index % 10 == 0;
+    boolean theories = index % 10 == 5;
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("package ").append(packageName(variant, index % this.packages)).append(";\n\n");
+    if (parameterized) {
+      sb.append("@org.junit.runner.RunWith(org.junit.runners.Parameterized.class)\n");
+    } else if (theories) {
+      sb.append("@org.junit.runner.RunWith(org.junit.experimental.theories.Theories.class)\n");
+    }
+    if (!rule) {
+      sb.append("@org.junit.experimental.categories.Category(").append(categoryName(groupOf(index))).append(".class)\n");
+    } else if (!hasPackageGroup(index % this.packages)) {
+      sb.append("@com.github.ferstl.junit.testgroups.TestGroup(\"").append(groupOf(index)).append("\")\n");
+    }
+    sb.append("public class Synthetic").append(index).append("Test {\n\n");
+    if (rule) {
+      sb.append("  @org.junit.ClassRule\n")
+          .append("  public static com.github.ferstl.junit.testgroups.TestGroupRule rule = com.github.ferstl.junit.testgroups.TestGroupRule.create();\n\n");
+    }
+
+    if (parameterized) {
+      sb.append("  @org.junit.runners.Parameterized.Parameters\n")
+          .append("  public static java.util.Collection<Object[]> data() {\n")
+          .append("    return java.util.Arrays.asList(new Object[][] {{1}, {2}, {3}});\n")
+          .append("  }\n\n")
+          .append("  @org.junit.runners.Parameterized.Parameter\n")
+          .append("  public int value;\n\n");
+    } else if (theories) {
+      sb.append("  @org.junit.experimental.theories.DataPoints\n")
+          .append("  public static int[] values = {1, 2, 3};\n\n");
+    }
+
+    for (int m = 0; m < this.methods; m++) {
+      if (theories) {
+        sb.append("  @org.junit.experimental.theories.Theory\n")
+            .append("  public void theory").append(m).append("(int value) {}\n\n");
+      } else {
+        sb.append("  @org.junit.Test\n")
+            .append("  public void test").append(m).append("() {}\n\n");
+      }
+    }
+    sb.append("}\n");
+
+    return sb.toString();
+  }
+
+  private void compile(List<File> files) throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new IllegalStateException("The synthetic suite needs to be compiled with a JDK");
+    }
+
+    File output = getClassesDirectory();
+    Files.createDirectories(output.toPath());
+    String classpath = System.getProperty("java.class.path") + File.pathSeparator + output.getPath();
+
+    // Compiling everything at once needs a lot of memory. The category interfaces are in the first batch.
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+      for (int i = 0; i < files.size(); i += COMPILE_BATCH_SIZE) {
+        List<File> batch = files.subList(i, Math.min(files.size(), i + COMPILE_BATCH_SIZE));
+        List<String> options = Arrays.asList("-d", output.getPath(), "-cp", classpath, "-proc:none", "-nowarn");
+        Boolean success = compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjectsFromFiles(batch)).call();
+        if (!success) {
+          throw new IllegalStateException("Unable to compile the synthetic suite");
+        }
+      }
+    }
+  }
+
+  private Properties descriptor() {
+    Properties descriptor = new Properties();
+    descriptor.setProperty("classes", Integer.toString(this.classes));
+    descriptor.setProperty("groups", Integer.toString(this.groups));
+    descriptor.setProperty("packages", Integer.toString(this.packages));
+    descriptor.setProperty("methods", Integer.toString(this.methods));
+
+    return descriptor;
+  }
+
+  private static File write(File sources, String className, String content) throws IOException {
+    File file = new File(sources, className.replace('.', File.separatorChar) + ".java");
+    Files.createDirectories(file.getParentFile().toPath());
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.write(content);
+    }
+
+    return file;
+  }
+
+  private static String packageOf(String className) {
+    return className.substring(0, className.lastIndexOf('.'));
+  }
+
+  private static String simpleName(String className) {
+    return className.substring(className.lastIndexOf('.') + 1);
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.ferstl.junit.testgroups.packaged.PackagedFixture;
+
+/**
+ * Benchmarks of the per test class overhead of {@link TestGroupRule} and of the decision behind it,
+ * {@link TestGroupDecisions#decide(TestGroup, Class)}. {@code enabledGroups} is the number of test groups in
+ * {@code -Dtestgroup}, which are named {@code group0}, {@code group1}, ... {@link ManyGroups} declares 64 test groups
+ * and matches only with 64 enabled groups. The {@code matches} benchmarks evaluate the compiled selection against the
+ * declared groups of {@link ManyGroups}, once as a list of groups and once as an expression that also excludes a group.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TestGroupRuleBenchmark {
+
+  @Param({"1", "8", "64"})
+  int enabledGroups;
+
+  private TestGroupRule rule;
+  private Statement base;
+  private Description singleGroup;
+  private Description manyGroups;
+  private Description packageGroup;
+  private Description disabled;
+  private TestGroup singleGroupAnnotation;
+  private TestGroup manyGroupsAnnotation;
+  private TestGroup disabledAnnotation;
+  private GroupExpression selection;
+  private GroupExpression expression;
+  private BitSet declaredGroups;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    StringBuilder list = new StringBuilder();
+    StringBuilder alternatives = new StringBuilder();
+    for (int i = 0; i < this.enabledGroups; i++) {
+      list.append(i > 0 ? "," : "").append("group").append(i);
+      alternatives.append(i > 0 ? " | " : "").append("group").append(i);
+    }
+    System.setProperty(TestGroup.DEFAULT_KEY, list.toString());
+
+    this.rule = TestGroupRule.create();
+    this.base = new Statement() {
+      @Override
+      public void evaluate() {}
+    };
+    this.singleGroup = Description.createSuiteDescription(SingleGroup.class);
+    this.manyGroups = Description.createSuiteDescription(ManyGroups.class);
+    this.packageGroup = Description.createSuiteDescription(PackagedFixture.class);
+    this.disabled = Description.createSuiteDescription(Disabled.class);
+    this.singleGroupAnnotation = SingleGroup.class.getAnnotation(TestGroup.class);
+    this.manyGroupsAnnotation = ManyGroups.class.getAnnotation(TestGroup.class);
+    this.disabledAnnotation = Disabled.class.getAnnotation(TestGroup.class);
+    this.selection = GroupExpression.compile(list.toString());
+    this.expression = GroupExpression.compile("(" + alternatives + ") & !slow");
+    this.declaredGroups = GroupExpression.toBitSet(TestGroupCache.declaredGroups(this.manyGroupsAnnotation));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+  }
+
+  @Benchmark
+  public Statement applySingleGroup() {
+    return this.rule.apply(this.base, this.singleGroup);
+  }
+
+  @Benchmark
+  public Statement applyManyGroups() {
+    return this.rule.apply(this.base, this.manyGroups);
+  }
+
+  @Benchmark
+  public Statement applyPackageGroup() {
+    return this.rule.apply(this.base, this.packageGroup);
+  }
+
+  @Benchmark
+  public Statement applyDisabled() {
+    return this.rule.apply(this.base, this.disabled);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Statement applyConcurrent() {
+    return this.rule.apply(this.base, this.manyGroups);
+  }
+
+  @Benchmark
+  public SkipReason decideSingleGroup() {
+    return TestGroupDecisions.decide(this.singleGroupAnnotation, SingleGroup.class);
+  }
+
+  @Benchmark
+  public SkipReason decideManyGroups() {
+    return TestGroupDecisions.decide(this.manyGroupsAnnotation, ManyGroups.class);
+  }
+
+  @Benchmark
+  public SkipReason decideDisabled() {
+    return TestGroupDecisions.decide(this.disabledAnnotation, Disabled.class);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public SkipReason decideConcurrent() {
+    return TestGroupDecisions.decide(this.manyGroupsAnnotation, ManyGroups.class);
+  }
+
+  @Benchmark
+  public TestGroup findTestGroup() {
+    return TestGroupDecisions.findTestGroup(SingleGroup.class);
+  }
+
+  @Benchmark
+  public TestGroup findPackageTestGroup() {
+    return TestGroupDecisions.findTestGroup(PackagedFixture.class);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public TestGroup findPackageTestGroupConcurrent() {
+    return TestGroupDecisions.findTestGroup(PackagedFixture.class);
+  }
+
+  @Benchmark
+  public boolean matchesSelection() {
+    return this.selection.matches(this.declaredGroups);
+  }
+
+  @Benchmark
+  public boolean matchesExpression() {
+    return this.expression.matches(this.declaredGroups);
+  }
+
+  @TestGroup("group0")
+  public static class SingleGroup {}
+
+  @TestGroup("disabled")
+  public static class Disabled {}
+
+  /**
+   * Declares 64 test groups. Only {@code group63} can match an enabled test group.
+   */
+  @TestGroup({
+    "other0", "other1", "other2", "other3", "other4", "other5", "other6", "other7",
+    "other8", "other9", "other10", "other11", "other12", "other13", "other14", "other15",
+    "other16", "other17", "other18", "other19", "other20", "other21", "other22", "other23",
+    "other24", "other25", "other26", "other27", "other28", "other29", "other30", "other31",
+    "other32", "other33", "other34", "other35", "other36", "other37", "other38", "other39",
+    "other40", "other41", "other42", "other43", "other44", "other45", "other46", "other47",
+    "other48", "other49", "other50", "other51", "other52", "other53", "other54", "other55",
+    "other56", "other57", "other58", "other59", "other60", "other61", "other62", "group63"})
+  public static class ManyGroups {}
+}
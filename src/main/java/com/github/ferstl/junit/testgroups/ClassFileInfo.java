@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Information about a class that was read from its class file by {@link ClassFileReader}. Class names are internal
+ * names, e.g. {@code java/lang/Object}.
+ */
+final class ClassFileInfo {
+
+  private final String name;
+  private final String superName;
+  private final int accessFlags;
+  private String key;
+  private Collection<String> groups;
+  private String runner;
+
+  ClassFileInfo(String name, String superName, int accessFlags) {
+    this.name = name;
+    this.superName = superName;
+    this.accessFlags = accessFlags;
+  }
+
+  String getName() {
+    return this.name;
+  }
+
+  String getSuperName() {
+    return this.superName;
+  }
+
+  String getPackageName() {
+    int lastSlash = this.name.lastIndexOf('/');
+    return lastSlash >= 0 ? this.name.substring(0, lastSlash) : "";
+  }
+
+  int getAccessFlags() {
+    return this.accessFlags;
+  }
+
+  boolean hasTestGroup() {
+    return this.key != null;
+  }
+
+  /**
+   * Key of the declared {@link TestGroup} or {@code null} if this class has no {@link TestGroup} annotation.
+   */
+  String getKey() {
+    return this.key;
+  }
+
+  Collection<String> getGroups() {
+    return this.groups;
+  }
+
+  void setTestGroup(String key, Collection<String> groups) {
+    this.key = key;
+    this.groups = Collections.unmodifiableCollection(groups);
+  }
+
+  /**
+   * Runner in the {@code @RunWith} annotation of this class or {@code null} if this class has no such annotation.
+   */
+  String getRunner() {
+    return this.runner;
+  }
+
+  void setRunner(String runner) {
+    this.runner = runner;
+  }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Minimal class file parser. It reads the name, the superclass, the access flags, the {@link TestGroup} annotation and
+ * the runner of the {@code @RunWith} annotation of a class without loading it. Only the constant pool entries that are actually needed are decoded. It can also
+ * collect the names of all classes a class refers to.
+ */
+final class ClassFileReader {
+
+  private static final int MAGIC = 0xCAFEBABE;
+  private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] KEY = "key".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] VALUE = "value".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] TEST_GROUP_DESCRIPTOR = ("L" + TestGroup.class.getName().replace('.', '/') + ";").getBytes(StandardCharsets.UTF_8);
+  /** JUnit 4 might not be on the class path, so {@code org.junit.runner.RunWith} is not referenced directly. */
+  private static final byte[] RUN_WITH_DESCRIPTOR = "Lorg/junit/runner/RunWith;".getBytes(StandardCharsets.UTF_8);
+
+  private final byte[] bytes;
+  private final int[] offsets;
+  private int position;
+
+  private ClassFileReader(byte[] bytes) {
+    this.bytes = bytes;
+    this.offsets = new int[0];
+  }
+
+  private ClassFileReader(byte[] bytes, int[] offsets, int position) {
+    this.bytes = bytes;
+    this.offsets = offsets;
+    this.position = position;
+  }
+
+  /**
+   * Parses the given class file.
+   *
+   * @param bytes Content of a class file.
+   * @return The parsed class file.
+   * @throws IOException If the content is not a valid class file.
+   */
+  static ClassFileInfo read(byte[] bytes) throws IOException {
+    try {
+      return new ClassFileReader(bytes).readConstantPool().readClass();
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated class file", e);
+    }
+  }
+
+  /**
+   * Returns the internal names of all classes the given class file refers to in its constant pool. This includes
+   * classes that only occur in descriptors or signatures, e.g. field types or type arguments.
+   *
+   * @param bytes Content of a class file.
+   * @return Internal names of the referenced classes.
+   * @throws IOException If the content is not a valid class file.
+   */
+  static Set<String> readReferencedClasses(byte[] bytes) throws IOException {
+    try {
+      return new ClassFileReader(bytes).readConstantPool().readReferences();
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated class file", e);
+    }
+  }
+
+  private ClassFileReader readConstantPool() throws IOException {
+    if (u4() != MAGIC) {
+      throw new IOException("Not a class file");
+    }
+    this.position += 4;
+
+    int count = u2();
+    int[] constantPool = new int[count];
+    for (int i = 1; i < count; i++) {
+      constantPool[i] = this.position;
+      int tag = u1();
+      switch (tag) {
+        case 1:
+          skip(u2());
+          break;
+        case 3:
+        case 4:
+        case 9:
+        case 10:
+        case 11:
+        case 12:
+        case 17:
+        case 18:
+          this.position += 4;
+          break;
+        case 5:
+        case 6:
+          this.position += 8;
+          i++;
+          break;
+        case 7:
+        case 8:
+        case 16:
+        case 19:
+        case 20:
+          this.position += 2;
+          break;
+        case 15:
+          this.position += 3;
+          break;
+        default:
+          throw new IOException("Unknown constant pool tag " + tag);
+      }
+    }
+
+    return new ClassFileReader(this.bytes, constantPool, this.position);
+  }
+
+  private ClassFileInfo readClass() throws IOException {
+    int accessFlags = u2();
+    String name = className(u2());
+    int superIndex = u2();
+    String superName = superIndex != 0 ? className(superIndex) : null;
+    skip(2 * u2());
+
+    skipMembers();
+    skipMembers();
+
+    ClassFileInfo info = new ClassFileInfo(name, superName, accessFlags);
+    int attributeCount = u2();
+    for (int i = 0; i < attributeCount; i++) {
+      int attributeName = u2();
+      int length = u4();
+      int end = this.position + length;
+      if (utf8Equals(attributeName, RUNTIME_VISIBLE_ANNOTATIONS)) {
+        readAnnotations(info);
+      }
+      this.position = end;
+    }
+
+    return info;
+  }
+
+  private Set<String> readReferences() throws IOException {
+    Set<String> references = new LinkedHashSet<>();
+    for (int i = 1; i < this.offsets.length; i++) {
+      int offset = this.offsets[i];
+      // The second slot of long and double constants is not used.
+      if (offset == 0) {
+        continue;
+      }
+
+      if (this.bytes[offset] == 7) {
+        String className = className(i);
+        if (!className.startsWith("[")) {
+          references.add(className);
+        }
+      } else if (this.bytes[offset] == 1) {
+        addDescriptorClasses(utf8(i), references);
+      }
+    }
+
+    return references;
+  }
+
+  /**
+   * Adds all class names of the form {@code Lpackage/Name;} or {@code Lpackage/Name<} within the given string.
+   */
+  private static void addDescriptorClasses(String value, Set<String> references) {
+    int start = value.indexOf('L');
+    while (start >= 0) {
+      int end = start + 1;
+      while (end < value.length() && isClassNameCharacter(value.charAt(end))) {
+        end++;
+      }
+
+      if (end > start + 1 && end < value.length() && (value.charAt(end) == ';' || value.charAt(end) == '<')) {
+        references.add(value.substring(start + 1, end));
+      }
+      start = value.indexOf('L', end);
+    }
+  }
+
+  private static boolean isClassNameCharacter(char c) {
+    return c == '/' || Character.isJavaIdentifierPart(c);
+  }
+
+  private void skipMembers() {
+    int memberCount = u2();
+    for (int i = 0; i < memberCount; i++) {
+      this.position += 6;
+      int attributeCount = u2();
+      for (int j = 0; j < attributeCount; j++) {
+        this.position += 2;
+        skip(u4());
+      }
+    }
+  }
+
+  private void readAnnotations(ClassFileInfo info) throws IOException {
+    int annotationCount = u2();
+    for (int i = 0; i < annotationCount; i++) {
+      int type = u2();
+      boolean testGroup = utf8Equals(type, TEST_GROUP_DESCRIPTOR);
+      boolean runWith = utf8Equals(type, RUN_WITH_DESCRIPTOR);
+      int pairCount = u2();
+      String key = TestGroup.DEFAULT_KEY;
+      List<String> groups = new ArrayList<>();
+      for (int j = 0; j < pairCount; j++) {
+        int elementName = u2();
+        if (testGroup && utf8Equals(elementName, KEY) && this.bytes[this.position] == 's') {
+          this.position++;
+          key = utf8(u2());
+        } else if (testGroup && utf8Equals(elementName, VALUE) && this.bytes[this.position] == '[') {
+          this.position++;
+          int valueCount = u2();
+          for (int k = 0; k < valueCount; k++) {
+            if (u1() != 's') {
+              throw new IOException("Unexpected value in " + TestGroup.class.getName());
+            }
+            groups.add(utf8(u2()));
+          }
+        } else if (runWith && utf8Equals(elementName, VALUE) && this.bytes[this.position] == 'c') {
+          this.position++;
+          // The value is a descriptor, e.g. Lorg/junit/runners/Suite;
+          String descriptor = utf8(u2());
+          info.setRunner(descriptor.substring(1, descriptor.length() - 1));
+        } else {
+          skipElementValue();
+        }
+      }
+
+      if (testGroup) {
+        info.setTestGroup(key, groups);
+      }
+    }
+  }
+
+  private void skipElementValue() throws IOException {
+    int tag = u1();
+    switch (tag) {
+      case 'B':
+      case 'C':
+      case 'D':
+      case 'F':
+      case 'I':
+      case 'J':
+      case 'S':
+      case 'Z':
+      case 's':
+      case 'c':
+        this.position += 2;
+        break;
+      case 'e':
+        this.position += 4;
+        break;
+      case '@':
+        this.position += 2;
+        int pairCount = u2();
+        for (int i = 0; i < pairCount; i++) {
+          this.position += 2;
+          skipElementValue();
+        }
+        break;
+      case '[':
+        int valueCount = u2();
+        for (int i = 0; i < valueCount; i++) {
+          skipElementValue();
+        }
+        break;
+      default:
+        throw new IOException("Unknown element value tag " + (char) tag);
+    }
+  }
+
+  /**
+   * Skips the given number of bytes. Use this method instead of {@code this.position += u2()}, which would not consider
+   * the bytes read by {@code u2()}.
+   */
+  private void skip(int length) {
+    this.position += length;
+  }
+
+  private String className(int index) throws IOException {
+    int offset = this.offsets[index];
+    if (this.bytes[offset] != 7) {
+      throw new IOException("Constant pool entry " + index + " is not a class");
+    }
+
+    return utf8(((this.bytes[offset + 1] & 0xFF) << 8) | (this.bytes[offset + 2] & 0xFF));
+  }
+
+  private String utf8(int index) throws IOException {
+    int offset = this.offsets[index];
+    // Class files use modified UTF-8, which is exactly what DataInput#readUTF() reads.
+    return new DataInputStream(new ByteArrayInputStream(this.bytes, offset + 1, this.bytes.length - offset - 1)).readUTF();
+  }
+
+  private boolean utf8Equals(int index, byte[] expected) {
+    int offset = this.offsets[index];
+    int length = ((this.bytes[offset + 1] & 0xFF) << 8) | (this.bytes[offset + 2] & 0xFF);
+    if (this.bytes[offset] != 1 || length != expected.length) {
+      return false;
+    }
+
+    for (int i = 0; i < length; i++) {
+      if (this.bytes[offset + 3 + i] != expected[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private int u1() {
+    return this.bytes[this.position++] & 0xFF;
+  }
+
+  private int u2() {
+    return (u1() << 8) | u1();
+  }
+
+  private int u4() {
+    return (u2() << 16) | u2();
+  }
+}
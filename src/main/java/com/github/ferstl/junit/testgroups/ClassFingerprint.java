@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fingerprint of a test class' bytecode and of the bytecode of all classes it refers to, directly or indirectly. Only
+ * classes in class path directories are considered (i.e. the classes of the project being tested). Classes in JAR files
+ * and JDK classes are not part of the fingerprint. The fingerprint is computed once per class and JVM. Each class file is
+ * read and hashed at most once per JVM, no matter how many test classes refer to it. A class whose closure has more
+ * than {@value #MAX_CLASSES} classes does not have a fingerprint, so it is never considered unchanged.
+ */
+final class ClassFingerprint {
+
+  static final int MAX_CLASSES = 10_000;
+
+  /** Digest and referenced classes per class file URL. */
+  private static final ConcurrentMap<String, ClassFile> CLASS_FILES = new ConcurrentHashMap<>();
+
+  private static final ClassValue<String> FINGERPRINTS = new ClassValue<String>() {
+
+    @Override
+    protected String computeValue(Class<?> type) {
+      ClassLoader classLoader = type.getClassLoader() != null ? type.getClassLoader() : ClassLoader.getSystemClassLoader();
+      try {
+        return compute(type.getName(), classLoader);
+      } catch (IOException e) {
+        // Without fingerprint, the class is never considered unchanged.
+        return null;
+      }
+    }
+  };
+
+  private ClassFingerprint() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Returns the fingerprint of the given class or {@code null} if it cannot be computed.
+   */
+  static String of(Class<?> testClass) {
+    return FINGERPRINTS.get(testClass);
+  }
+
+  /**
+   * Computes the fingerprint of the given class.
+   *
+   * @return The fingerprint or {@code null} if the closure of the class is too large.
+   * @throws IOException If a class file cannot be read.
+   */
+  static String compute(String className, ClassLoader classLoader) throws IOException {
+    MessageDigest digest = sha256();
+    Set<String> visited = new HashSet<>();
+    Deque<String> pending = new ArrayDeque<>();
+    pending.add(className.replace('.', '/'));
+
+    while (!pending.isEmpty()) {
+      String name = pending.removeFirst();
+      if (!visited.add(name)) {
+        continue;
+      }
+      if (visited.size() > MAX_CLASSES) {
+        // A truncated closure might miss a changed class.
+        return null;
+      }
+
+      URL resource = classLoader.getResource(name + ".class");
+      if (resource == null || !"file".equals(resource.getProtocol())) {
+        continue;
+      }
+
+      ClassFile classFile = classFile(resource);
+      digest.update(name.getBytes(StandardCharsets.UTF_8));
+      digest.update(classFile.digest);
+      pending.addAll(classFile.referencedClasses);
+    }
+
+    return toHex(digest.digest());
+  }
+
+  private static ClassFile classFile(URL resource) throws IOException {
+    String key = resource.toString();
+    ClassFile classFile = CLASS_FILES.get(key);
+    if (classFile == null) {
+      byte[] bytes = read(resource);
+      classFile = new ClassFile(sha256().digest(bytes), ClassFileReader.readReferencedClasses(bytes));
+      ClassFile existing = CLASS_FILES.putIfAbsent(key, classFile);
+      classFile = existing != null ? existing : classFile;
+    }
+
+    return classFile;
+  }
+
+  private static byte[] read(URL resource) throws IOException {
+    try (InputStream is = resource.openStream()) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream(4096);
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = is.read(buffer)) >= 0) {
+        os.write(buffer, 0, read);
+      }
+
+      return os.toByteArray();
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(2 * bytes.length);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Digest and referenced classes of a class file.
+   */
+  private static final class ClassFile {
+
+    final byte[] digest;
+    final Collection<String> referencedClasses;
+
+    ClassFile(byte[] digest, Collection<String> referencedClasses) {
+      this.digest = digest;
+      this.referencedClasses = referencedClasses;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads and statically initializes the next test classes of a serial test run on a background thread while the current
+ * test class is running. The number of test classes that are prepared ahead is defined by the system property
+ * {@value #PRELOAD_PROPERTY} (default: {@code 0}, i.e. disabled). Callers should only pass the test classes that are
+ * going to run. Additionally, a test class is only initialized if it is selected by its test group, the shard and the
+ * incremental state. Other test classes are at most loaded.
+ * <p>
+ * If the static initialization of a test class fails in the background, its {@link ExceptionInInitializerError} is
+ * thrown by {@link #load(String)} when the test class is about to run.
+ * </p>
+ */
+final class ClassPreloader implements Closeable {
+
+  /** System property with the number of test classes to prepare ahead. */
+  static final String PRELOAD_PROPERTY = "testgroup.preload";
+
+  private final List<String> classNames;
+  private final Map<String, Integer> positions;
+  private final ClassLoader classLoader;
+  private final int window;
+  private final ExecutorService executor;
+  private final ConcurrentMap<String, Future<Class<?>>> preloaded;
+  private int next;
+
+  private ClassPreloader(List<String> classNames, ClassLoader classLoader, int window) {
+    this.classNames = classNames;
+    this.classLoader = classLoader;
+    this.window = window;
+    this.positions = new HashMap<>();
+    for (int i = 0; i < classNames.size(); i++) {
+      this.positions.put(classNames.get(i), i);
+    }
+    this.preloaded = new ConcurrentHashMap<>();
+    this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "testgroup-preload");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Creates a preloader for the given test classes if preloading is enabled.
+   *
+   * @param classNames The binary names of the test classes in the order in which they run.
+   * @param classLoader The class loader of the test classes.
+   * @return The preloader or {@code null} if preloading is disabled.
+   */
+  static ClassPreloader fromSystemProperty(List<String> classNames, ClassLoader classLoader) {
+    int window = GroupSettings.readInteger(PRELOAD_PROPERTY, 0);
+
+    return window > 0 && classNames.size() > 1 ? new ClassPreloader(classNames, classLoader, window) : null;
+  }
+
+  /**
+   * Called right before the given test class runs. Starts preparing the next test classes and returns the given test
+   * class, which is loaded but not necessarily initialized.
+   *
+   * @param className Binary name of the test class.
+   * @return The test class.
+   * @throws ClassNotFoundException If the test class does not exist.
+   * @throws ExceptionInInitializerError If the background initialization of the test class failed.
+   */
+  Class<?> load(String className) throws ClassNotFoundException {
+    Integer position = this.positions.get(className);
+    if (position != null) {
+      advance(position);
+    }
+
+    Future<Class<?>> future = this.preloaded.remove(className);
+    if (future == null) {
+      return Class.forName(className, false, this.classLoader);
+    }
+
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Class.forName(className, false, this.classLoader);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof ClassNotFoundException) {
+        throw (ClassNotFoundException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Unable to preload " + className, cause);
+    }
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+    this.preloaded.clear();
+  }
+
+  private synchronized void advance(int position) {
+    this.next = Math.max(this.next, position + 1);
+    int end = Math.min(this.classNames.size(), position + 1 + this.window);
+    for (; this.next < end; this.next++) {
+      final String className = this.classNames.get(this.next);
+      this.preloaded.put(className, this.executor.submit(new Callable<Class<?>>() {
+
+        @Override
+        public Class<?> call() throws ClassNotFoundException {
+          Class<?> testClass = Class.forName(className, false, ClassPreloader.this.classLoader);
+          if (TestGroupDecisions.checkSelection(TestGroupDecisions.findTestGroup(testClass), testClass) == null) {
+            Class.forName(className, true, ClassPreloader.this.classLoader);
+          }
+
+          return testClass;
+        }
+      }));
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * {@link RunListener} that enables the fail-fast mode of the test groups in the system property
+ * {@code testgroup.failfast}, e.g. {@code -Dtestgroup.failfast=integration,db}. The first failure of a test class marks
+ * its test groups as failed and all test classes of these groups that have not started yet are skipped. Failed
+ * assumptions are no failures. The failed test groups are forgotten when the next test run starts, and so are the
+ * exhausted {@linkplain GroupBudgets time budgets} ({@code -Dtestgroup.budget}).
+ * <p>
+ * Test classes are skipped by the {@link TestGroupRule}, the {@link TestGroupCondition}, the {@link TestGroupComputer}
+ * and the {@link TestGroupSuite}. Custom suites built with a {@link TestGroupRunnerBuilder} decide before any test runs,
+ * so their test classes need the {@link TestGroupRule} to fail fast.
+ * </p>
+ */
+@RunListener.ThreadSafe
+public class FailFastListener extends RunListener {
+
+  @Override
+  public void testRunStarted(Description description) {
+    GroupFailFast.reset();
+    GroupBudgets.reset();
+  }
+
+  @Override
+  public void testFailure(Failure failure) {
+    Class<?> testClass = failure.getDescription().getTestClass();
+    if (testClass != null) {
+      GroupFailFast.failed(testClass);
+    }
+  }
+}
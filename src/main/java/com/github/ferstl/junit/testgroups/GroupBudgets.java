@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import com.github.ferstl.junit.testgroups.Timing.Kind;
+
+/**
+ * Wall-clock time budgets per test group, e.g. {@code -Dtestgroup.budget=smoke:5m,integration:90s}. Durations are
+ * numbers followed by {@code ms}, {@code s}, {@code m} or {@code h}. Numbers without unit are seconds. The budget of a
+ * test group starts when its first test class starts. Once it is exhausted, the remaining test classes of the test
+ * group are skipped.
+ * <p>
+ * With {@code -Dtestgroup.budget.interrupt=<factor>}, a test class that runs longer than {@code factor} times its
+ * recorded duration (see {@link TimingRecorder}) is interrupted. Test classes without history are never interrupted.
+ * A single watchdog thread checks the budgets and the running test classes. It only runs while test classes are
+ * running.
+ * </p>
+ * <p>
+ * The budgets start from scratch when the {@link FailFastListener} sees a new test run start, or when the system
+ * properties change.
+ * </p>
+ */
+final class GroupBudgets {
+
+  /** System property for the time budgets per test group. */
+  static final String BUDGET_PROPERTY = "testgroup.budget";
+  /** System property for the factor of the recorded duration after which a test class is interrupted. */
+  static final String INTERRUPT_PROPERTY = "testgroup.budget.interrupt";
+
+  private static final long WATCHDOG_PERIOD_MILLIS = 100;
+  private static final GroupBudgets NONE = new GroupBudgets(null, Collections.<String, Long>emptyMap(), 0);
+  private static final AtomicReference<GroupBudgets> CURRENT = new AtomicReference<>(NONE);
+
+  private final String value;
+  private final Map<String, Long> budgets;
+  private final double interruptFactor;
+  private final ConcurrentMap<String, Long> groupStarts;
+  private final Set<String> exhaustedGroups;
+  private final ConcurrentMap<Thread, RunningClass> runningClasses;
+  private volatile Map<String, Timing> history;
+  private Thread watchdog;
+
+  GroupBudgets(String value, Map<String, Long> budgets, double interruptFactor) {
+    this.value = value;
+    this.budgets = budgets;
+    this.interruptFactor = interruptFactor;
+    this.groupStarts = new ConcurrentHashMap<>();
+    this.exhaustedGroups = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    this.runningClasses = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Returns the budgets defined by the system properties {@value #BUDGET_PROPERTY} and {@value #INTERRUPT_PROPERTY}.
+   *
+   * @throws IllegalArgumentException If the system properties are not valid.
+   */
+  static GroupBudgets current() {
+    String budgets = System.getProperty(BUDGET_PROPERTY);
+    String interrupt = System.getProperty(INTERRUPT_PROPERTY);
+    String value = budgets == null && interrupt == null ? null : budgets + "|" + interrupt;
+    GroupBudgets current = CURRENT.get();
+
+    if (current.value == null ? value != null : !current.value.equals(value)) {
+      current = value != null ? new GroupBudgets(value, readBudgets(), readInterruptFactor(interrupt)) : NONE;
+      CURRENT.set(current);
+    }
+
+    return current;
+  }
+
+  /**
+   * Forgets the budgets of the previous run, so the budgets of the next run start from scratch.
+   */
+  static void reset() {
+    CURRENT.set(NONE);
+  }
+
+  /**
+   * Returns a {@link SkipReason} if the budget of one of the given test class' test groups is exhausted.
+   */
+  SkipReason check(Class<?> testClass) {
+    if (this.budgets.isEmpty()) {
+      return null;
+    }
+
+    long now = System.nanoTime();
+    for (String group : TestGroupCache.declaredGroups(testClass)) {
+      if (isExhausted(group, now)) {
+        return new SkipReason("The time budget of test group ", group, " (", format(this.budgets.get(group)), ") is exhausted");
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns {@code true} if budgets or interrupts are defined, i.e. if running test classes have to be
+   * {@link #start(Class) registered}.
+   */
+  boolean isActive() {
+    return this.value != null;
+  }
+
+  /**
+   * Checks the budgets of all test groups and interrupts the test classes that run too long. This method is called
+   * periodically by the watchdog thread.
+   */
+  void tick() {
+    long now = System.nanoTime();
+    for (String group : this.budgets.keySet()) {
+      isExhausted(group, now);
+    }
+
+    if (this.interruptFactor > 0) {
+      for (RunningClass runningClass : this.runningClasses.values()) {
+        if (!runningClass.interrupted && runningClass.limit > 0 && now - runningClass.start > runningClass.limit) {
+          runningClass.interruptReason = "Test class " + runningClass.testClass.getName() + " was interrupted after running longer than "
+              + this.interruptFactor + " times its recorded duration (" + format(runningClass.limit) + ")";
+          runningClass.interrupted = true;
+          runningClass.thread.interrupt();
+        }
+      }
+    }
+  }
+
+  private boolean isExhausted(String group, long now) {
+    if (this.exhaustedGroups.contains(group)) {
+      return true;
+    }
+
+    Long budget = this.budgets.get(group);
+    Long start = this.groupStarts.get(group);
+    if (budget != null && start != null && now - start > budget) {
+      this.exhaustedGroups.add(group);
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Registers the given test class, which starts running on the current thread, with the watchdog.
+   */
+  RunningClass start(Class<?> testClass) {
+    long now = System.nanoTime();
+    for (String group : TestGroupCache.declaredGroups(testClass)) {
+      if (this.budgets.containsKey(group)) {
+        this.groupStarts.putIfAbsent(group, now);
+      }
+    }
+
+    RunningClass runningClass = new RunningClass(testClass, Thread.currentThread(), now, interruptLimit(testClass));
+    this.runningClasses.put(runningClass.thread, runningClass);
+    startWatchdog();
+
+    return runningClass;
+  }
+
+  void finish(RunningClass runningClass) {
+    this.runningClasses.remove(runningClass.thread, runningClass);
+    if (runningClass.interrupted) {
+      // Do not leak the interrupt to the next test class that runs on this thread.
+      Thread.interrupted();
+    }
+  }
+
+  private long interruptLimit(Class<?> testClass) {
+    if (this.interruptFactor <= 0) {
+      return 0;
+    }
+
+    Map<String, Timing> history = this.history;
+    if (history == null) {
+      try {
+        history = TimingStore.fromSystemProperties().load(Kind.CLASS);
+      } catch (IOException e) {
+        // Without history, no test class is interrupted.
+        history = Collections.emptyMap();
+      }
+      this.history = history;
+    }
+
+    Timing timing = history.get(testClass.getName());
+    return timing != null ? (long) (timing.getWallTime() * this.interruptFactor) : 0;
+  }
+
+  private synchronized void startWatchdog() {
+    if (this.watchdog != null) {
+      return;
+    }
+
+    this.watchdog = new Thread("testgroups-budget-watchdog") {
+
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            Thread.sleep(WATCHDOG_PERIOD_MILLIS);
+            synchronized (GroupBudgets.this) {
+              if (GroupBudgets.this.runningClasses.isEmpty()) {
+                GroupBudgets.this.watchdog = null;
+                return;
+              }
+            }
+            tick();
+          }
+        } catch (InterruptedException e) {
+          synchronized (GroupBudgets.this) {
+            GroupBudgets.this.watchdog = null;
+          }
+        }
+      }
+    };
+    this.watchdog.setDaemon(true);
+    this.watchdog.start();
+  }
+
+  private static Map<String, Long> readBudgets() {
+    Map<String, Long> budgets = new LinkedHashMap<>();
+    for (Entry<String, List<String>> entry : GroupSettings.read(BUDGET_PROPERTY).entrySet()) {
+      String value = entry.getValue().get(entry.getValue().size() - 1);
+      budgets.put(entry.getKey(), parseDuration(value, entry.getKey()));
+    }
+
+    return budgets;
+  }
+
+  private static double readInterruptFactor(String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return 0;
+    }
+
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid factor '" + value + "' in system property " + INTERRUPT_PROPERTY, e);
+    }
+  }
+
+  /**
+   * Parses a duration like {@code 5m} and returns it in nanoseconds.
+   */
+  static long parseDuration(String value, String group) {
+    int unitStart = 0;
+    while (unitStart < value.length() && (Character.isDigit(value.charAt(unitStart)) || value.charAt(unitStart) == '.')) {
+      unitStart++;
+    }
+
+    TimeUnit unit;
+    String unitName = value.substring(unitStart).trim();
+    switch (unitName) {
+      case "ms":
+        unit = TimeUnit.MILLISECONDS;
+        break;
+      case "":
+      case "s":
+        unit = TimeUnit.SECONDS;
+        break;
+      case "m":
+        unit = TimeUnit.MINUTES;
+        break;
+      case "h":
+        unit = TimeUnit.HOURS;
+        break;
+      default:
+        unit = null;
+    }
+
+    if (unit == null || unitStart == 0) {
+      throw new IllegalArgumentException("Invalid duration '" + value + "' for group " + group + " in system property " + BUDGET_PROPERTY + ". Expected e.g. 90s or 5m.");
+    }
+
+    return (long) (Double.parseDouble(value.substring(0, unitStart)) * unit.toNanos(1));
+  }
+
+  private static String format(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos) + "ms";
+  }
+
+  /**
+   * A running test class. It is interrupted by the watchdog if it runs too long.
+   */
+  static final class RunningClass {
+
+    final Class<?> testClass;
+    final Thread thread;
+    final long start;
+    final long limit;
+    volatile boolean interrupted;
+    volatile String interruptReason;
+
+    RunningClass(Class<?> testClass, Thread thread, long start, long limit) {
+      this.testClass = testClass;
+      this.thread = thread;
+      this.start = start;
+      this.limit = limit;
+    }
+  }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiled test group selection. A selection is a boolean expression over test group names:
+ * <ul>
+ * <li>{@code a,b} or {@code a | b}: Test groups {@code a} or {@code b}.</li>
+ * <li>{@code a & b}: Test groups {@code a} and {@code b}.</li>
+ * <li>{@code !a}: Not test group {@code a}.</li>
+ * <li>{@code (a | b) & !c}: Parentheses for grouping.</li>
+ * <li>{@link TestGroup#ALL_GROUPS}: Any test group.</li>
+ * </ul>
+ * {@code !} binds tighter than {@code &}, which binds tighter than {@code |} and {@code ,}. An empty selection only
+ * matches the implicit default group. Group names are interned to IDs, so a compiled expression can be evaluated against
+ * a {@link BitSet} of declared groups without any allocation.
+ */
+final class GroupExpression {
+
+  private static final ConcurrentMap<String, Integer> GROUP_IDS = new ConcurrentHashMap<>();
+  private static final AtomicInteger NEXT_GROUP_ID = new AtomicInteger();
+
+  private final String source;
+  private final Node root;
+
+  private GroupExpression(String source, Node root) {
+    this.source = source;
+    this.root = root;
+  }
+
+  /**
+   * Compiles the given selection.
+   *
+   * @param expression The selection. May be {@code null} or empty.
+   * @return The compiled expression.
+   * @throws IllegalArgumentException If the selection is not valid.
+   */
+  static GroupExpression compile(String expression) {
+    if (expression == null || expression.trim().isEmpty()) {
+      return new GroupExpression("", null);
+    }
+
+    return new GroupExpression(expression.trim(), new Parser(expression).parse());
+  }
+
+  /**
+   * Converts the given group names into a {@link BitSet} of interned group IDs.
+   */
+  static BitSet toBitSet(Collection<String> groups) {
+    BitSet bitSet = new BitSet();
+    for (String group : groups) {
+      bitSet.set(groupId(group));
+    }
+
+    return bitSet;
+  }
+
+  /**
+   * Evaluates this expression against the given declared groups.
+   *
+   * @param declaredGroups Declared groups as returned by {@link #toBitSet(Collection)}.
+   * @return {@code true} if the declared groups are selected by this expression.
+   */
+  boolean matches(BitSet declaredGroups) {
+    if (this.root == null) {
+      return declaredGroups.isEmpty();
+    }
+
+    return this.root.matches(declaredGroups);
+  }
+
+  /**
+   * Returns the names of the test groups that this expression selects, in the order of their appearance. Negated test
+   * groups are not included, e.g. {@code (a | b) & !c} selects {@code a} and {@code b}. Returns
+   * {@link TestGroup#ALL_GROUPS} if the expression selects any test group.
+   */
+  Collection<String> selectedGroups() {
+    Collection<String> groups = new LinkedHashSet<>();
+    if (this.root != null) {
+      this.root.collectSelectedGroups(groups, false);
+    }
+
+    return groups;
+  }
+
+  @Override
+  public String toString() {
+    return this.source;
+  }
+
+  private static int groupId(String group) {
+    Integer id = GROUP_IDS.get(group);
+    if (id == null) {
+      Integer newId = NEXT_GROUP_ID.getAndIncrement();
+      id = GROUP_IDS.putIfAbsent(group, newId);
+      id = id != null ? id : newId;
+    }
+
+    return id;
+  }
+
+  private abstract static class Node {
+
+    abstract boolean matches(BitSet declaredGroups);
+
+    /**
+     * Adds the names of all test groups in this node that are not negated.
+     */
+    abstract void collectSelectedGroups(Collection<String> groups, boolean negated);
+  }
+
+  private static final class Constant extends Node {
+
+    @Override
+    boolean matches(BitSet declaredGroups) {
+      return true;
+    }
+
+    @Override
+    void collectSelectedGroups(Collection<String> groups, boolean negated) {
+      if (!negated) {
+        groups.add(TestGroup.ALL_GROUPS);
+      }
+    }
+  }
+
+  private static final class Group extends Node {
+
+    private final String name;
+    private final int id;
+
+    Group(String name) {
+      this.name = name;
+      this.id = groupId(name);
+    }
+
+    @Override
+    boolean matches(BitSet declaredGroups) {
+      return declaredGroups.get(this.id);
+    }
+
+    @Override
+    void collectSelectedGroups(Collection<String> groups, boolean negated) {
+      if (!negated) {
+        groups.add(this.name);
+      }
+    }
+  }
+
+  private static final class Not extends Node {
+
+    private final Node operand;
+
+    Not(Node operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    boolean matches(BitSet declaredGroups) {
+      return !this.operand.matches(declaredGroups);
+    }
+
+    @Override
+    void collectSelectedGroups(Collection<String> groups, boolean negated) {
+      this.operand.collectSelectedGroups(groups, !negated);
+    }
+  }
+
+  private static final class And extends Node {
+
+    private final Node left;
+    private final Node right;
+
+    And(Node left, Node right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    boolean matches(BitSet declaredGroups) {
+      return this.left.matches(declaredGroups) && this.right.matches(declaredGroups);
+    }
+
+    @Override
+    void collectSelectedGroups(Collection<String> groups, boolean negated) {
+      this.left.collectSelectedGroups(groups, negated);
+      this.right.collectSelectedGroups(groups, negated);
+    }
+  }
+
+  private static final class Or extends Node {
+
+    private final Node left;
+    private final Node right;
+
+    Or(Node left, Node right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    boolean matches(BitSet declaredGroups) {
+      return this.left.matches(declaredGroups) || this.right.matches(declaredGroups);
+    }
+
+    @Override
+    void collectSelectedGroups(Collection<String> groups, boolean negated) {
+      this.left.collectSelectedGroups(groups, negated);
+      this.right.collectSelectedGroups(groups, negated);
+    }
+  }
+
+  /**
+   * Recursive descent parser for test group selections.
+   */
+  private static final class Parser {
+
+    private final String expression;
+    private int position;
+
+    Parser(String expression) {
+      this.expression = expression;
+    }
+
+    Node parse() {
+      Node node = parseOr();
+      skipWhitespace();
+      if (this.position < this.expression.length()) {
+        throw error("Unexpected '" + this.expression.charAt(this.position) + "'");
+      }
+
+      return node;
+    }
+
+    private Node parseOr() {
+      skipSeparators();
+      Node node = parseAnd();
+      while (skipSeparators()) {
+        if (atEndOfGroup()) {
+          break;
+        }
+        node = new Or(node, parseAnd());
+      }
+
+      return node;
+    }
+
+    private Node parseAnd() {
+      Node node = parseNot();
+      while (accept('&')) {
+        node = new And(node, parseNot());
+      }
+
+      return node;
+    }
+
+    private Node parseNot() {
+      if (accept('!')) {
+        return new Not(parseNot());
+      }
+
+      return parsePrimary();
+    }
+
+    private Node parsePrimary() {
+      if (accept('(')) {
+        Node node = parseOr();
+        if (!accept(')')) {
+          throw error("Missing ')'");
+        }
+
+        return node;
+      }
+
+      skipWhitespace();
+      int start = this.position;
+      while (this.position < this.expression.length() && isNameCharacter(this.expression.charAt(this.position))) {
+        this.position++;
+      }
+
+      if (start == this.position) {
+        throw error("Test group name expected");
+      }
+
+      String name = this.expression.substring(start, this.position);
+      return TestGroup.ALL_GROUPS.equals(name) ? new Constant() : new Group(name);
+    }
+
+    /**
+     * Skips any number of {@code |} and {@code ,} operators.
+     *
+     * @return {@code true} if at least one operator was skipped.
+     */
+    private boolean skipSeparators() {
+      boolean skipped = false;
+      while (accept(',') || accept('|')) {
+        skipped = true;
+      }
+
+      return skipped;
+    }
+
+    private boolean atEndOfGroup() {
+      skipWhitespace();
+      return this.position == this.expression.length() || this.expression.charAt(this.position) == ')';
+    }
+
+    private boolean accept(char c) {
+      skipWhitespace();
+      if (this.position < this.expression.length() && this.expression.charAt(this.position) == c) {
+        this.position++;
+        return true;
+      }
+
+      return false;
+    }
+
+    private void skipWhitespace() {
+      while (this.position < this.expression.length() && Character.isWhitespace(this.expression.charAt(this.position))) {
+        this.position++;
+      }
+    }
+
+    private static boolean isNameCharacter(char c) {
+      return !Character.isWhitespace(c) && "&|,!()".indexOf(c) < 0;
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at position " + this.position + " in test group selection '" + this.expression + "'");
+    }
+  }
+}
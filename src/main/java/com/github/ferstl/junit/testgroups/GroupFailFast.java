@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fail-fast mode per test group. The test groups in the system property {@value #FAILFAST_PROPERTY} (or all test
+ * groups with {@code -Dtestgroup.failfast=all}) fail as soon as one of their test classes fails, which is recorded by
+ * the {@link FailFastListener}. Test classes of a failed test group that have not started yet are skipped. Other test
+ * groups keep running. Failed test groups are forgotten at the start of each test run.
+ */
+final class GroupFailFast {
+
+  /** System property with the comma separated test groups in fail-fast mode. */
+  static final String FAILFAST_PROPERTY = "testgroup.failfast";
+
+  /** Failed test groups and the test class that failed first. */
+  private static final ConcurrentMap<String, String> FAILED = new ConcurrentHashMap<>();
+  private static final AtomicReference<FailFastGroups> FAILFAST_GROUPS = new AtomicReference<>(new FailFastGroups(null));
+
+  private GroupFailFast() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Records a failure of the given test class. The test groups of the test class that are in fail-fast mode are
+   * marked as failed.
+   */
+  static void failed(Class<?> testClass) {
+    Collection<String> failFastGroups = failFastGroups();
+    if (failFastGroups.isEmpty()) {
+      return;
+    }
+
+    for (String group : TestGroupCache.declaredGroups(testClass)) {
+      if (isFailFast(failFastGroups, group)) {
+        FAILED.putIfAbsent(group, testClass.getName());
+      }
+    }
+  }
+
+  /**
+   * Checks whether one of the test groups of the given test class has failed.
+   *
+   * @return {@code null} if the test class can run or a {@link SkipReason} describing which test group has failed.
+   */
+  static SkipReason check(Class<?> testClass) {
+    if (FAILED.isEmpty()) {
+      return null;
+    }
+
+    Collection<String> failFastGroups = failFastGroups();
+    for (String group : TestGroupCache.declaredGroups(testClass)) {
+      String failedClass = FAILED.get(group);
+      if (failedClass != null && isFailFast(failFastGroups, group)) {
+        return new SkipReason("Test group ", group, " failed fast after a failure in test class ", failedClass);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Forgets all failed test groups.
+   */
+  static void reset() {
+    FAILED.clear();
+  }
+
+  /**
+   * Returns the test groups in fail-fast mode. The system property is read on each call but only parsed when its value
+   * changed.
+   */
+  private static Collection<String> failFastGroups() {
+    String value = System.getProperty(FAILFAST_PROPERTY);
+    FailFastGroups failFastGroups = FAILFAST_GROUPS.get();
+    if (failFastGroups.value == null ? value != null : !failFastGroups.value.equals(value)) {
+      failFastGroups = new FailFastGroups(value);
+      FAILFAST_GROUPS.set(failFastGroups);
+    }
+
+    return failFastGroups.groups;
+  }
+
+  private static boolean isFailFast(Collection<String> failFastGroups, String group) {
+    return failFastGroups.contains(group) || failFastGroups.contains(TestGroup.ALL_GROUPS);
+  }
+
+  private static final class FailFastGroups {
+
+    final String value;
+    final Collection<String> groups;
+
+    FailFastGroups(String value) {
+      this.value = value;
+      this.groups = TestGroupDecisions.split(value);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+/**
+ * Expensive fixture that is shared by all test classes of a {@link TestGroup}, e.g. an embedded database. The fixture
+ * is set up before the first enabled test class of its group starts and torn down after the last one has finished.
+ * Fixtures of disabled test groups are never set up. Fixtures are registered with {@link GroupFixtures} and managed by
+ * {@link TestGroupRule}.
+ */
+public interface GroupFixture {
+
+  /**
+   * Sets up the fixture.
+   *
+   * @throws Exception If the fixture cannot be set up. All test classes that need the fixture will fail.
+   */
+  void setUp() throws Exception;
+
+  /**
+   * Tears down the fixture.
+   *
+   * @throws Exception If the fixture cannot be torn down.
+   */
+  void tearDown() throws Exception;
+}
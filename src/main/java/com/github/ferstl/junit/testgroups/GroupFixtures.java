@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.MultipleFailureException;
+import org.junit.runners.model.Statement;
+
+/**
+ * Registry of the {@link GroupFixture}s per test group. Fixtures are either registered programmatically with
+ * {@link #register(String, GroupFixture)} or with the system property {@code testgroup.fixtures}, e.g.
+ * {@code -Dtestgroup.fixtures=integration:my.project.EmbeddedDatabase}. Fixture classes in the system property need a
+ * public no-arg constructor and are instantiated once, even if they are declared for several test groups.
+ * <p>
+ * Each fixture counts the test classes that are currently using it. When the fixture is no longer used and all test
+ * classes that were expected to use it have finished or were skipped, it is torn down. The expected test classes are
+ * known when the tests are run with a {@link TestGroupComputer}. Otherwise, fixtures are torn down when the JVM shuts
+ * down.
+ * </p>
+ */
+public final class GroupFixtures {
+
+  /** System property for the fixture classes per test group. */
+  static final String FIXTURES_PROPERTY = "testgroup.fixtures";
+
+  private static final ConcurrentMap<String, List<FixtureHolder>> REGISTERED = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, FixtureHolder> BY_CLASS_NAME = new ConcurrentHashMap<>();
+  private static final List<FixtureHolder> STARTED = new CopyOnWriteArrayList<>();
+  private static final AtomicBoolean SHUTDOWN_HOOK = new AtomicBoolean();
+  private static final AtomicReference<ConfiguredFixtures> CONFIGURED = new AtomicReference<>(new ConfiguredFixtures(null));
+
+  private GroupFixtures() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Registers a fixture for the given test group. Registering the same fixture for several test groups shares it
+   * between them.
+   *
+   * @param group The test group.
+   * @param fixture The fixture.
+   */
+  public static void register(String group, GroupFixture fixture) {
+    FixtureHolder holder = null;
+    for (List<FixtureHolder> holders : REGISTERED.values()) {
+      for (FixtureHolder existing : holders) {
+        holder = existing.fixture == fixture ? existing : holder;
+      }
+    }
+
+    List<FixtureHolder> holders = REGISTERED.get(group);
+    if (holders == null) {
+      holders = new CopyOnWriteArrayList<>();
+      List<FixtureHolder> existing = REGISTERED.putIfAbsent(group, holders);
+      holders = existing != null ? existing : holders;
+    }
+    holders.add(holder != null ? holder : new FixtureHolder(fixture));
+  }
+
+  /**
+   * Returns the fixture of the given type, e.g. to access a database that was started by the fixture.
+   *
+   * @param type Type of the fixture.
+   * @return The fixture or {@code null} if no fixture of the given type is known yet.
+   */
+  public static <T extends GroupFixture> T get(Class<T> type) {
+    for (FixtureHolder holder : STARTED) {
+      if (type.isInstance(holder.fixture)) {
+        return type.cast(holder.fixture);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Wraps the given statement so that it sets up the fixtures of the given test class' test groups before and releases
+   * them after the statement.
+   */
+  static Statement wrap(final Class<?> testClass, final Statement base) {
+    final List<FixtureHolder> holders = holders(testClass);
+    if (holders.isEmpty()) {
+      return base;
+    }
+
+    return new Statement() {
+
+      @Override
+      public void evaluate() throws Throwable {
+        List<FixtureHolder> acquired = new ArrayList<>(holders.size());
+        List<Throwable> errors = new ArrayList<>();
+        try {
+          for (FixtureHolder holder : holders) {
+            holder.acquire();
+            acquired.add(holder);
+          }
+          base.evaluate();
+        } catch (Throwable e) {
+          errors.add(e);
+        }
+
+        // A failure to tear down a fixture must not hide the failure of the test class.
+        for (int i = acquired.size() - 1; i >= 0; i--) {
+          try {
+            acquired.get(i).release();
+          } catch (RuntimeException e) {
+            errors.add(e);
+          }
+        }
+        MultipleFailureException.assertEmpty(errors);
+      }
+    };
+  }
+
+  /**
+   * Announces that the given test class is going to run, so the fixtures of its test groups are not torn down before it
+   * has finished.
+   */
+  static void expect(Class<?> testClass) {
+    for (FixtureHolder holder : holders(testClass)) {
+      holder.expect();
+    }
+  }
+
+  /**
+   * Announces that an expected test class has finished, whether it ran, was skipped or failed before it was wrapped.
+   * Fixtures that are no longer expected are torn down. Failures to tear down a fixture are reported to the given
+   * notifier.
+   *
+   * @param testClass The test class. May be {@code null}.
+   * @param description The description of the test class.
+   * @param notifier The notifier of the test run.
+   */
+  static void finished(Class<?> testClass, Description description, RunNotifier notifier) {
+    if (testClass == null) {
+      return;
+    }
+
+    for (FixtureHolder holder : holders(testClass)) {
+      try {
+        holder.finished();
+      } catch (RuntimeException e) {
+        notifier.fireTestFailure(new Failure(description, e));
+      }
+    }
+  }
+
+  /**
+   * Tears down all fixtures that are still set up.
+   *
+   * @throws RuntimeException The first failure to tear down a fixture. The failures of the other fixtures are added as
+   *         suppressed exceptions.
+   */
+  static void tearDownAll() {
+    RuntimeException failure = null;
+    for (FixtureHolder holder : STARTED) {
+      try {
+        holder.tearDown();
+      } catch (RuntimeException e) {
+        // Try to tear down the remaining fixtures anyway.
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static List<FixtureHolder> holders(Class<?> testClass) {
+    Set<FixtureHolder> holders = new LinkedHashSet<>();
+    Map<String, List<String>> configured = configuredFixtures();
+
+    for (String group : TestGroupCache.declaredGroups(testClass)) {
+      List<FixtureHolder> registered = REGISTERED.get(group);
+      holders.addAll(registered != null ? registered : Collections.<FixtureHolder>emptyList());
+
+      List<String> classNames = configured.get(group);
+      for (String className : classNames != null ? classNames : Collections.<String>emptyList()) {
+        holders.add(holderForClass(className, testClass.getClassLoader()));
+      }
+    }
+
+    return new ArrayList<>(holders);
+  }
+
+  /**
+   * Returns the fixture classes per test group of the system property {@value #FIXTURES_PROPERTY}, which is only parsed
+   * again when it changes.
+   */
+  private static Map<String, List<String>> configuredFixtures() {
+    String value = System.getProperty(FIXTURES_PROPERTY);
+    ConfiguredFixtures configured = CONFIGURED.get();
+    if (configured.value == null ? value != null : !configured.value.equals(value)) {
+      configured = new ConfiguredFixtures(value);
+      CONFIGURED.set(configured);
+    }
+
+    return configured.classNames;
+  }
+
+  private static FixtureHolder holderForClass(String className, ClassLoader classLoader) {
+    FixtureHolder holder = BY_CLASS_NAME.get(className);
+    if (holder == null) {
+      try {
+        Class<?> fixtureClass = Class.forName(className, true, classLoader);
+        holder = new FixtureHolder(fixtureClass.asSubclass(GroupFixture.class).getDeclaredConstructor().newInstance());
+      } catch (ReflectiveOperationException | ClassCastException e) {
+        throw new IllegalArgumentException("Unable to create group fixture " + className + " (system property " + FIXTURES_PROPERTY + ")", e);
+      }
+
+      FixtureHolder existing = BY_CLASS_NAME.putIfAbsent(className, holder);
+      holder = existing != null ? existing : holder;
+    }
+
+    return holder;
+  }
+
+  private static void registerShutdownHook() {
+    if (SHUTDOWN_HOOK.compareAndSet(false, true)) {
+      Runtime.getRuntime().addShutdownHook(new Thread("testgroups-fixture-shutdown") {
+
+        @Override
+        public void run() {
+          tearDownAll();
+        }
+      });
+    }
+  }
+
+  private static final class ConfiguredFixtures {
+
+    final String value;
+    final Map<String, List<String>> classNames;
+
+    ConfiguredFixtures(String value) {
+      this.value = value;
+      this.classNames = GroupSettings.parse(FIXTURES_PROPERTY, value);
+    }
+  }
+
+  /**
+   * Reference counting lifecycle of a single fixture. All state changes are synchronized on the holder, so a fixture
+   * is never set up or torn down concurrently.
+   */
+  static final class FixtureHolder {
+
+    final GroupFixture fixture;
+    private boolean setUp;
+    private int references;
+    private int expected;
+    private int finished;
+
+    FixtureHolder(GroupFixture fixture) {
+      this.fixture = fixture;
+    }
+
+    synchronized void expect() {
+      this.expected++;
+    }
+
+    synchronized void acquire() throws Exception {
+      if (!this.setUp) {
+        registerShutdownHook();
+        this.fixture.setUp();
+        this.setUp = true;
+        STARTED.add(this);
+      }
+
+      this.references++;
+    }
+
+    synchronized void release() {
+      this.references--;
+      tearDownIfUnused();
+    }
+
+    synchronized void finished() {
+      if (this.expected > 0) {
+        this.finished++;
+      }
+      tearDownIfUnused();
+    }
+
+    private void tearDownIfUnused() {
+      // Without expected test classes, the fixture lives until the JVM shuts down.
+      if (this.references == 0 && this.expected > 0 && this.finished >= this.expected) {
+        this.expected = 0;
+        this.finished = 0;
+        tearDown();
+      }
+    }
+
+    synchronized void tearDown() {
+      if (this.setUp) {
+        this.setUp = false;
+        STARTED.remove(this);
+        try {
+          this.fixture.tearDown();
+        } catch (Exception e) {
+          throw new IllegalStateException("Unable to tear down group fixture " + this.fixture, e);
+        }
+      }
+    }
+  }
+}
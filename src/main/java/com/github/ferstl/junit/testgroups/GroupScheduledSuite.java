@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.Statement;
+
+/**
+ * {@link Suite} that runs its test classes with a {@link GroupScheduler}.
+ */
+class GroupScheduledSuite extends Suite {
+
+  private final GroupScheduler scheduler;
+
+  GroupScheduledSuite(RunnerBuilder builder, Class<?>[] classes, GroupScheduler scheduler) throws InitializationError {
+    super(builder, classes);
+    this.scheduler = scheduler;
+    setScheduler(scheduler);
+  }
+
+  @Override
+  protected Statement classBlock(RunNotifier notifier) {
+    final Statement statement = super.classBlock(notifier);
+    return new Statement() {
+
+      @Override
+      public void evaluate() throws Throwable {
+        PreloadingSuite.expectFixtures(PreloadingSuite.enabledChildren(getChildren(), getDescription()));
+        statement.evaluate();
+      }
+    };
+  }
+
+  @Override
+  protected void runChild(final Runner runner, final RunNotifier notifier) {
+    if (runner instanceof SkippedClassRunner) {
+      super.runChild(runner, notifier);
+      return;
+    }
+
+    final Class<?> testClass = runner.getDescription().getTestClass();
+    Runnable child = new Runnable() {
+
+      @Override
+      public void run() {
+        try {
+          // Other test classes might have failed while this one was waiting for the scheduler.
+          if (!TestGroupRunnerBuilder.skipStopped(runner, notifier)) {
+            GroupScheduledSuite.super.runChild(runner, notifier);
+          }
+        } finally {
+          GroupFixtures.finished(testClass, runner.getDescription(), notifier);
+        }
+      }
+    };
+
+    if (this.scheduler.isVirtual(testClass)) {
+      this.scheduler.runVirtual(testClass, runner.getDescription(), notifier, child);
+    } else {
+      this.scheduler.run(testClass, runner.getDescription(), notifier, child);
+    }
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ManagedBlocker;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * {@link RunnerScheduler} that runs test classes in parallel on a {@link ForkJoinPool} and limits the number of
+ * concurrently running test classes per test group. Groups without a limit are unbounded, i.e. only limited by the
+ * pool's parallelism. A test class that belongs to several limited groups acquires a permit for each of them in the
+ * order of their names, so two test classes can never deadlock each other. Afterwards, it locks the
+ * {@link ResourceLocks resources} of its test groups, again in a fixed order.
+ * <p>
+ * Test classes of the test groups in {@value #VIRTUAL_PROPERTY} run on {@link VirtualThreads virtual threads} instead
+ * of the pool. This is meant for test groups that mostly wait for I/O. Their concurrency cap, e.g.
+ * {@code -Dtestgroup.virtual=http:64,db:8}, limits the number of concurrently running test classes of the group. A cap
+ * of {@code 0} means unbounded. With {@code -Dtestgroup.virtual.diagnostics=true}, the diagnostics of these test
+ * classes are printed to the standard error at the end.
+ * </p>
+ * <p>
+ * The pool and the virtual threads are created on the first test class of a run and shut down when the run has
+ * finished, so the same scheduler can be used for several runs.
+ * </p>
+ */
+final class GroupScheduler implements RunnerScheduler {
+
+  /** System property for the concurrency limits per test group, e.g. {@code integration:2,db:1}. */
+  static final String CONCURRENCY_PROPERTY = "testgroup.concurrency";
+  /** System property for the number of threads. The default is the number of available processors. */
+  static final String PARALLELISM_PROPERTY = "testgroup.parallelism";
+  /** System property for the test groups that run on virtual threads and their concurrency caps, e.g. {@code http:64}. */
+  static final String VIRTUAL_PROPERTY = "testgroup.virtual";
+  /** System property that prints the diagnostics of the test classes that ran on virtual threads. */
+  static final String DIAGNOSTICS_PROPERTY = "testgroup.virtual.diagnostics";
+
+  private final int parallelism;
+  private final Map<String, Semaphore> limits;
+  private final ResourceLocks resourceLocks;
+  private final Map<String, Semaphore> virtualLimits;
+  private final Set<String> virtualGroups;
+  private ForkJoinPool pool;
+  private volatile VirtualThreads virtualThreads;
+
+  GroupScheduler(int parallelism, Map<String, Integer> limits, ResourceLocks resourceLocks) {
+    this(parallelism, limits, resourceLocks, Collections.<String, Integer>emptyMap());
+  }
+
+  GroupScheduler(int parallelism, Map<String, Integer> limits, ResourceLocks resourceLocks, Map<String, Integer> virtualLimits) {
+    this.parallelism = parallelism;
+    this.resourceLocks = resourceLocks;
+    this.limits = semaphores(limits);
+    this.virtualLimits = semaphores(virtualLimits);
+    this.virtualGroups = new HashSet<>(virtualLimits.keySet());
+  }
+
+  /**
+   * Creates a scheduler that is configured by the system properties {@value #PARALLELISM_PROPERTY},
+   * {@value #CONCURRENCY_PROPERTY} and {@value ResourceLocks#RESOURCES_PROPERTY}.
+   */
+  static GroupScheduler fromSystemProperties() {
+    int parallelism = GroupSettings.readInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors());
+
+    return new GroupScheduler(parallelism, GroupSettings.readIntegers(CONCURRENCY_PROPERTY), ResourceLocks.fromSystemProperties(),
+        GroupSettings.readIntegers(VIRTUAL_PROPERTY));
+  }
+
+  @Override
+  public synchronized void schedule(Runnable childStatement) {
+    if (this.pool == null) {
+      this.pool = new ForkJoinPool(this.parallelism);
+    }
+
+    this.pool.execute(childStatement);
+  }
+
+  @Override
+  public void finished() {
+    ForkJoinPool pool;
+    synchronized (this) {
+      pool = this.pool;
+      this.pool = null;
+    }
+
+    if (pool != null) {
+      pool.shutdown();
+      try {
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    // The pool has handed over all test classes of virtual test groups by now.
+    VirtualThreads virtualThreads;
+    synchronized (this) {
+      virtualThreads = this.virtualThreads;
+      this.virtualThreads = null;
+    }
+    if (virtualThreads != null) {
+      try {
+        virtualThreads.awaitTermination();
+      } finally {
+        try {
+          virtualThreads.close();
+        } catch (IOException e) {
+          // Only the diagnostics are affected.
+        }
+      }
+      if (virtualThreads.isDiagnosticsEnabled()) {
+        virtualThreads.report(System.err);
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the given test class belongs to a test group that runs on virtual threads.
+   */
+  boolean isVirtual(Class<?> testClass) {
+    if (this.virtualGroups.isEmpty() || testClass == null) {
+      return false;
+    }
+
+    for (String group : TestGroupCache.declaredGroups(testClass)) {
+      if (this.virtualGroups.contains(group)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Runs the given child on a virtual thread after acquiring a permit for each capped virtual test group of the given
+   * test class. Returns immediately. The other limits and resources are acquired as in
+   * {@link #run(Class, Description, RunNotifier, Runnable)}. Since nobody waits for the virtual thread, a failure to
+   * acquire the permits is reported to the given notifier.
+   *
+   * @param testClass The test class that is run by {@code child}.
+   * @param description The description of the test class.
+   * @param notifier The notifier of the test run.
+   * @param child Runs the test class.
+   */
+  void runVirtual(final Class<?> testClass, final Description description, final RunNotifier notifier, final Runnable child) {
+    virtualThreads().execute(testClass, new Runnable() {
+
+      @Override
+      public void run() {
+        List<Semaphore> permits = new ArrayList<>();
+        try {
+          acquireGroupPermits(testClass, GroupScheduler.this.virtualLimits, permits);
+          acquirePermits(testClass, permits);
+        } catch (IllegalStateException e) {
+          release(permits);
+          failed(testClass, description, notifier, e);
+          return;
+        }
+
+        try {
+          child.run();
+        } finally {
+          release(permits);
+        }
+      }
+    });
+  }
+
+  /**
+   * Runs the given child after acquiring a permit for each limited test group and a lock for each resource of the given
+   * test class. The pool does not report exceptions of its tasks, so a failure to acquire the permits is reported to the
+   * given notifier.
+   *
+   * @param testClass The test class that is run by {@code child}.
+   * @param description The description of the test class.
+   * @param notifier The notifier of the test run.
+   * @param child Runs the test class.
+   */
+  void run(Class<?> testClass, Description description, RunNotifier notifier, Runnable child) {
+    List<Semaphore> permits = new ArrayList<>();
+    try {
+      acquirePermits(testClass, permits);
+    } catch (IllegalStateException e) {
+      release(permits);
+      failed(testClass, description, notifier, e);
+      return;
+    }
+
+    try {
+      child.run();
+    } finally {
+      release(permits);
+    }
+  }
+
+  private static void failed(Class<?> testClass, Description description, RunNotifier notifier, IllegalStateException e) {
+    notifier.fireTestFailure(new Failure(description, e));
+    // The child does not run, so it cannot announce that the test class has finished.
+    GroupFixtures.finished(testClass, description, notifier);
+  }
+
+  private void acquirePermits(Class<?> testClass, List<Semaphore> permits) {
+    if ((this.limits.isEmpty() && this.resourceLocks.isEmpty()) || testClass == null) {
+      return;
+    }
+
+    acquireGroupPermits(testClass, this.limits, permits);
+    for (int stripe : this.resourceLocks.getStripes(testClass)) {
+      acquire(this.resourceLocks.getStripe(stripe), permits, "resources of " + testClass.getName());
+    }
+  }
+
+  private static void acquireGroupPermits(Class<?> testClass, Map<String, Semaphore> limits, List<Semaphore> permits) {
+    // The limits are sorted by group name, which defines the order in which the permits are acquired.
+    for (Map.Entry<String, Semaphore> limit : limits.entrySet()) {
+      if (TestGroupCache.declaredGroups(testClass).contains(limit.getKey())) {
+        acquire(limit.getValue(), permits, "test group " + limit.getKey());
+      }
+    }
+  }
+
+  private VirtualThreads virtualThreads() {
+    VirtualThreads virtualThreads = this.virtualThreads;
+    if (virtualThreads == null) {
+      synchronized (this) {
+        virtualThreads = this.virtualThreads;
+        if (virtualThreads == null) {
+          virtualThreads = new VirtualThreads(Boolean.getBoolean(DIAGNOSTICS_PROPERTY));
+          this.virtualThreads = virtualThreads;
+        }
+      }
+    }
+
+    return virtualThreads;
+  }
+
+  private static Map<String, Semaphore> semaphores(Map<String, Integer> limits) {
+    Map<String, Semaphore> semaphores = new TreeMap<>();
+    for (Map.Entry<String, Integer> entry : limits.entrySet()) {
+      // A limit of zero or less means unbounded.
+      if (entry.getValue() > 0) {
+        semaphores.put(entry.getKey(), new Semaphore(entry.getValue(), true));
+      }
+    }
+
+    return semaphores;
+  }
+
+  private static void release(List<Semaphore> permits) {
+    for (int i = permits.size() - 1; i >= 0; i--) {
+      permits.get(i).release();
+    }
+  }
+
+  /**
+   * Acquires a permit of the given semaphore and adds it to the given permits, which the caller has to release.
+   */
+  private static void acquire(Semaphore semaphore, List<Semaphore> permits, String description) {
+    try {
+      ForkJoinPool.managedBlock(new PermitBlocker(semaphore));
+      permits.add(semaphore);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for " + description, e);
+    }
+  }
+
+  /**
+   * Lets the {@link ForkJoinPool} compensate for threads that are blocked by a test group limit.
+   */
+  private static final class PermitBlocker implements ManagedBlocker {
+
+    private final Semaphore semaphore;
+    private boolean acquired;
+
+    PermitBlocker(Semaphore semaphore) {
+      this.semaphore = semaphore;
+    }
+
+    @Override
+    public boolean block() throws InterruptedException {
+      if (!this.acquired) {
+        this.semaphore.acquire();
+        this.acquired = true;
+      }
+
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      if (!this.acquired) {
+        this.acquired = this.semaphore.tryAcquire();
+      }
+
+      return this.acquired;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses per-group settings from system properties. A setting is a comma separated list of {@code group:value} pairs,
+ * e.g. {@code -Dtestgroup.concurrency=integration:2,db:1}. The group name ends at the first colon, so values may
+ * contain colons themselves. A group may occur several times.
+ */
+final class GroupSettings {
+
+  private GroupSettings() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Returns all values per group of the given system property in their declared order.
+   *
+   * @param property Name of the system property.
+   * @return Values per group. The map is empty if the system property is not set.
+   * @throws IllegalArgumentException If an entry does not contain a colon.
+   */
+  static Map<String, List<String>> read(String property) {
+    return parse(property, System.getProperty(property));
+  }
+
+  /**
+   * Returns all values per group of the given value of a system property in their declared order.
+   *
+   * @param property Name of the system property, for error messages.
+   * @param value Value of the system property. May be {@code null}.
+   * @return Values per group. The map is empty if the value is {@code null}.
+   * @throws IllegalArgumentException If an entry does not contain a colon.
+   */
+  static Map<String, List<String>> parse(String property, String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<String, List<String>> settings = new LinkedHashMap<>();
+    for (String entry : value.split(",")) {
+      entry = entry.trim();
+      if (entry.isEmpty()) {
+        continue;
+      }
+
+      int colon = entry.indexOf(':');
+      if (colon <= 0 || colon == entry.length() - 1) {
+        throw new IllegalArgumentException("Invalid entry '" + entry + "' in system property " + property + ". Expected <group>:<value>.");
+      }
+
+      String group = entry.substring(0, colon).trim();
+      List<String> values = settings.get(group);
+      if (values == null) {
+        values = new ArrayList<>();
+        settings.put(group, values);
+      }
+      values.add(entry.substring(colon + 1).trim());
+    }
+
+    return settings;
+  }
+
+  /**
+   * Returns the integer setting per group of the given system property. If a group occurs several times, its last value
+   * wins.
+   *
+   * @param property Name of the system property.
+   * @return Value per group.
+   * @throws IllegalArgumentException If an entry is not valid.
+   */
+  static Map<String, Integer> readIntegers(String property) {
+    Map<String, Integer> integers = new LinkedHashMap<>();
+    for (Map.Entry<String, List<String>> entry : read(property).entrySet()) {
+      String value = entry.getValue().get(entry.getValue().size() - 1);
+      try {
+        integers.put(entry.getKey(), Integer.valueOf(value));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid number '" + value + "' for group " + entry.getKey() + " in system property " + property, e);
+      }
+    }
+
+    return integers;
+  }
+
+  /**
+   * Reads an integer system property.
+   *
+   * @param property Name of the system property.
+   * @param defaultValue Value to use if the system property is not set.
+   * @return The value of the system property.
+   * @throws IllegalArgumentException If the value is not an integer.
+   */
+  static int readInteger(String property, int defaultValue) {
+    String value = System.getProperty(property);
+    if (value == null || value.trim().isEmpty()) {
+      return defaultValue;
+    }
+
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid number '" + value + "' in system property " + property, e);
+    }
+  }
+}
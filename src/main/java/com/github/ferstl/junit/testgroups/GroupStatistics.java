@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+/**
+ * Statistics of a single test group as exposed by {@link TestGroupMetricsMXBean}. Durations are in milliseconds and
+ * only contain test classes that were run by a {@link TestGroupRule}.
+ */
+public class GroupStatistics {
+
+  private final String group;
+  private final long runClasses;
+  private final long skippedClasses;
+  private final long totalDurationMillis;
+  private final long p99DurationMillis;
+
+  public GroupStatistics(String group, long runClasses, long skippedClasses, long totalDurationMillis, long p99DurationMillis) {
+    this.group = group;
+    this.runClasses = runClasses;
+    this.skippedClasses = skippedClasses;
+    this.totalDurationMillis = totalDurationMillis;
+    this.p99DurationMillis = p99DurationMillis;
+  }
+
+  public String getGroup() {
+    return this.group;
+  }
+
+  public long getRunClasses() {
+    return this.runClasses;
+  }
+
+  public long getSkippedClasses() {
+    return this.skippedClasses;
+  }
+
+  public long getTotalDurationMillis() {
+    return this.totalDurationMillis;
+  }
+
+  public long getP99DurationMillis() {
+    return this.p99DurationMillis;
+  }
+
+  @Override
+  public String toString() {
+    return this.group + ": run=" + this.runClasses + ", skipped=" + this.skippedClasses + ", total=" + this.totalDurationMillis
+        + "ms, p99=" + this.p99DurationMillis + "ms";
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.TestClass;
+
+/**
+ * {@link RunListener} that records which test classes passed. When the test run has finished, the fingerprints of the
+ * passed test classes are written to the state file of the incremental mode and the failed test classes are removed
+ * from it. A test class only counts as passed if all of its test methods ran (or were ignored) and passed, so runs of
+ * single test methods, e.g. with {@code -Dtest=MyTest#myMethod}, do not mark the whole test class as passed. Test
+ * classes whose test methods cannot be determined, e.g. because of a custom runner, never count as passed. With
+ * {@code -Dtestgroup.incremental=true}, the next test run skips all test classes that passed and did not change since
+ * then. The state file is defined by the system property {@code testgroup.incremental.state} (default:
+ * {@value IncrementalState#DEFAULT_LOCATION}).
+ */
+@RunListener.ThreadSafe
+public class IncrementalRecorder extends RunListener {
+
+  private final ConcurrentMap<Class<?>, ClassResult> results;
+
+  public IncrementalRecorder() {
+    this.results = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public void testStarted(Description description) {
+    ran(description);
+  }
+
+  @Override
+  public void testIgnored(Description description) {
+    ran(description);
+  }
+
+  @Override
+  public void testFailure(Failure failure) {
+    Class<?> testClass = failure.getDescription().getTestClass();
+    if (testClass != null) {
+      result(testClass).failed = true;
+    }
+  }
+
+  @Override
+  public void testRunFinished(Result result) throws Exception {
+    Map<Class<?>, Boolean> results = new HashMap<>();
+    for (Entry<Class<?>, ClassResult> entry : this.results.entrySet()) {
+      ClassResult classResult = entry.getValue();
+      if (classResult.failed) {
+        results.put(entry.getKey(), Boolean.FALSE);
+      } else if (classResult.isComplete(entry.getKey())) {
+        results.put(entry.getKey(), Boolean.TRUE);
+      }
+    }
+    this.results.clear();
+
+    if (!results.isEmpty()) {
+      IncrementalState.forStateFile().update(results);
+    }
+  }
+
+  private void ran(Description description) {
+    Class<?> testClass = description.getTestClass();
+    String methodName = description.getMethodName();
+    if (testClass != null && methodName != null) {
+      // Parameterized tests are named like "test[0]".
+      int parameters = methodName.indexOf('[');
+      result(testClass).ranMethods.add(parameters > 0 ? methodName.substring(0, parameters) : methodName);
+    }
+  }
+
+  private ClassResult result(Class<?> testClass) {
+    ClassResult result = this.results.get(testClass);
+    if (result == null) {
+      result = new ClassResult();
+      ClassResult existing = this.results.putIfAbsent(testClass, result);
+      result = existing != null ? existing : result;
+    }
+
+    return result;
+  }
+
+  /**
+   * Test methods of a test class that ran and whether one of them failed.
+   */
+  private static final class ClassResult {
+
+    final Set<String> ranMethods = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    volatile boolean failed;
+
+    /**
+     * Returns {@code true} if all test methods of the given test class ran.
+     */
+    boolean isComplete(Class<?> testClass) {
+      List<FrameworkMethod> testMethods;
+      try {
+        testMethods = new TestClass(testClass).getAnnotatedMethods(Test.class);
+      } catch (RuntimeException e) {
+        return false;
+      }
+
+      if (testMethods.isEmpty()) {
+        return false;
+      }
+      for (FrameworkMethod testMethod : testMethods) {
+        if (!this.ranMethods.contains(testMethod.getName())) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+}
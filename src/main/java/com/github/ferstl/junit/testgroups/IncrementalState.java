@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fingerprints of all test classes that passed in their last run. In incremental mode ({@code -Dtestgroup.incremental=true})
+ * a test class is skipped if it passed in its last run and its {@link ClassFingerprint} did not change since then. The
+ * state is stored in the properties file defined by {@code -Dtestgroup.incremental.state} (default:
+ * {@value #DEFAULT_LOCATION}) and is updated by the {@link IncrementalRecorder}.
+ */
+final class IncrementalState {
+
+  /** System property that enables the incremental mode. */
+  static final String INCREMENTAL_PROPERTY = "testgroup.incremental";
+  /** System property with the location of the state file. */
+  static final String STATE_PROPERTY = "testgroup.incremental.state";
+  /** Default location of the state file. */
+  static final String DEFAULT_LOCATION = "target/testgroups-incremental.properties";
+
+  private static final AtomicReference<IncrementalState> CURRENT = new AtomicReference<>();
+
+  private final File file;
+  private volatile Map<String, String> fingerprints;
+
+  IncrementalState(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Returns the state if the incremental mode is enabled.
+   *
+   * @return The state or {@code null} if the incremental mode is disabled.
+   */
+  static IncrementalState current() {
+    if (!Boolean.getBoolean(INCREMENTAL_PROPERTY)) {
+      return null;
+    }
+
+    return forStateFile();
+  }
+
+  /**
+   * Returns the state of the file defined by the system property {@value #STATE_PROPERTY}, no matter whether the
+   * incremental mode is enabled.
+   */
+  static IncrementalState forStateFile() {
+    File file = new File(System.getProperty(STATE_PROPERTY, DEFAULT_LOCATION));
+    IncrementalState state = CURRENT.get();
+    if (state == null || !state.file.equals(file)) {
+      state = new IncrementalState(file);
+      CURRENT.set(state);
+    }
+
+    return state;
+  }
+
+  /**
+   * Forgets the cached state, so the state file is read again. The state file might have been updated by another JVM.
+   */
+  static void reset() {
+    CURRENT.set(null);
+  }
+
+  /**
+   * Returns {@code true} if the given test class passed in its last run and did not change since then.
+   */
+  boolean isUnchanged(Class<?> testClass) {
+    String fingerprint = fingerprints().get(testClass.getName());
+
+    return fingerprint != null && fingerprint.equals(ClassFingerprint.of(testClass));
+  }
+
+  /**
+   * Records the results of a test run. Passed test classes are stored with their current fingerprint, failed test
+   * classes are removed.
+   *
+   * @param results {@code true} for each passed test class and {@code false} for each failed test class.
+   * @throws IOException If the state file cannot be written.
+   */
+  void update(Map<Class<?>, Boolean> results) throws IOException {
+    File parent = this.file.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Unable to create directory " + parent);
+    }
+
+    try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock = channel.lock()) {
+      // Other JVMs might have updated the file in the meantime.
+      Properties properties = new Properties();
+      properties.load(Channels.newInputStream(channel));
+
+      for (Entry<Class<?>, Boolean> result : results.entrySet()) {
+        String fingerprint = ClassFingerprint.of(result.getKey());
+        if (result.getValue() && fingerprint != null) {
+          properties.setProperty(result.getKey().getName(), fingerprint);
+        } else {
+          properties.remove(result.getKey().getName());
+        }
+      }
+
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      properties.store(os, "Fingerprints of passed test classes");
+      channel.truncate(0);
+      ByteBuffer buffer = ByteBuffer.wrap(os.toByteArray());
+      long position = 0;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      this.fingerprints = toMap(properties);
+    }
+  }
+
+  private Map<String, String> fingerprints() {
+    Map<String, String> fingerprints = this.fingerprints;
+    if (fingerprints == null) {
+      fingerprints = load();
+      this.fingerprints = fingerprints;
+    }
+
+    return fingerprints;
+  }
+
+  private Map<String, String> load() {
+    if (!this.file.isFile()) {
+      return Collections.emptyMap();
+    }
+
+    Properties properties = new Properties();
+    try (InputStream is = Channels.newInputStream(FileChannel.open(this.file.toPath(), StandardOpenOption.READ))) {
+      properties.load(is);
+    } catch (IOException e) {
+      // An unreadable state means that all test classes are run.
+      return Collections.emptyMap();
+    }
+
+    return toMap(properties);
+  }
+
+  private static Map<String, String> toMap(Properties properties) {
+    Map<String, String> map = new HashMap<>();
+    for (String name : properties.stringPropertyNames()) {
+      map.put(name, properties.getProperty(name));
+    }
+
+    return map;
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * JDK Flight Recorder events of this library and the monitoring of JDK events it uses. This class must only be loaded
+ * if the JVM provides the {@code jdk.jfr} module, which is checked by {@link TestGroupInstrumentation}. Events that are
+ * not enabled in the current recording are discarded by the JVM at almost no cost.
+ */
+final class JfrEvents {
+
+  private static final String VIRTUAL_THREAD_PINNED = "jdk.VirtualThreadPinned";
+  /** Event types of the events that are checked before their data is collected, so no event is allocated for that. */
+  private static final EventType DECISION_TYPE = EventType.getEventType(DecisionEvent.class);
+  private static final EventType EXECUTION_TYPE = EventType.getEventType(ClassExecutionEvent.class);
+
+  private JfrEvents() {
+    throw new AssertionError("not instantiable");
+  }
+
+  static void decision(Class<?> testClass, String groups, String skipReason, long latencyNanos) {
+    DecisionEvent event = new DecisionEvent();
+    if (event.shouldCommit()) {
+      event.testClass = testClass;
+      event.groups = groups;
+      event.skipped = skipReason != null;
+      event.reason = skipReason;
+      event.latency = latencyNanos;
+      event.commit();
+    }
+  }
+
+  /**
+   * Returns {@code true} if a running recording has enabled the {@link DecisionEvent}.
+   */
+  static boolean isDecisionEnabled() {
+    return DECISION_TYPE.isEnabled();
+  }
+
+  static Object beginRuleEvaluation() {
+    RuleEvaluationEvent event = new RuleEvaluationEvent();
+    event.begin();
+    return event;
+  }
+
+  static void endRuleEvaluation(Object token, Class<?> testClass, boolean skipped) {
+    RuleEvaluationEvent event = (RuleEvaluationEvent) token;
+    event.end();
+    if (event.shouldCommit()) {
+      event.testClass = testClass;
+      event.skipped = skipped;
+      event.commit();
+    }
+  }
+
+  /**
+   * Returns {@code true} if a running recording has enabled the {@link ClassExecutionEvent}.
+   */
+  static boolean isExecutionEnabled() {
+    return EXECUTION_TYPE.isEnabled();
+  }
+
+  static Object beginExecution() {
+    ClassExecutionEvent event = new ClassExecutionEvent();
+    event.begin();
+    return event;
+  }
+
+  static void endExecution(Object token, Class<?> testClass, String groups, boolean failed) {
+    ClassExecutionEvent event = (ClassExecutionEvent) token;
+    event.end();
+    if (event.shouldCommit()) {
+      event.testClass = testClass;
+      event.groups = groups;
+      event.failed = failed;
+      event.commit();
+    }
+  }
+
+  /**
+   * Streams the Flight Recorder event {@code jdk.VirtualThreadPinned} to the given {@link VirtualThreads}.
+   *
+   * @return The stream or {@code null} if the JVM does not support event streaming.
+   */
+  static Closeable monitorPinnedThreads(final VirtualThreads virtualThreads) {
+    try {
+      final RecordingStream stream = new RecordingStream();
+      stream.enable(VIRTUAL_THREAD_PINNED);
+      stream.onEvent(VIRTUAL_THREAD_PINNED, new Consumer<RecordedEvent>() {
+
+        @Override
+        public void accept(RecordedEvent event) {
+          if (event.getThread() != null) {
+            virtualThreads.pinned(event.getThread().getJavaThreadId(), event.getDuration().toNanos());
+          }
+        }
+      });
+      stream.startAsync();
+
+      return new Closeable() {
+
+        @Override
+        public void close() {
+          try {
+            // RecordingStream#stop() (Java 20) delivers all pending events before the stream is closed.
+            RecordingStream.class.getMethod("stop").invoke(stream);
+          } catch (ReflectiveOperationException e) {
+            // Pending events are lost.
+          } finally {
+            stream.close();
+          }
+        }
+      };
+    } catch (LinkageError | RuntimeException e) {
+      // Event streaming requires Java 14.
+      return null;
+    }
+  }
+
+  @Name("com.github.ferstl.junit.testgroups.Decision")
+  @Label("Test Group Decision")
+  @Description("Decision whether a test class is run or skipped")
+  @Category({"JUnit", "Test Groups"})
+  @StackTrace(false)
+  static class DecisionEvent extends Event {
+
+    @Label("Test Class")
+    Class<?> testClass;
+
+    @Label("Test Groups")
+    String groups;
+
+    @Label("Skipped")
+    boolean skipped;
+
+    @Label("Reason")
+    String reason;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+  }
+
+  @Name("com.github.ferstl.junit.testgroups.RuleEvaluation")
+  @Label("Test Group Rule Evaluation")
+  @Description("Evaluation of a TestGroupRule")
+  @Category({"JUnit", "Test Groups"})
+  @StackTrace(false)
+  static class RuleEvaluationEvent extends Event {
+
+    @Label("Test Class")
+    Class<?> testClass;
+
+    @Label("Skipped")
+    boolean skipped;
+  }
+
+  @Name("com.github.ferstl.junit.testgroups.ClassExecution")
+  @Label("Test Class Execution")
+  @Description("Execution of an enabled test class")
+  @Category({"JUnit", "Test Groups"})
+  @StackTrace(false)
+  static class ClassExecutionEvent extends Event {
+
+    @Label("Test Class")
+    Class<?> testClass;
+
+    @Label("Test Groups")
+    String groups;
+
+    @Label("Failed")
+    boolean failed;
+  }
+}
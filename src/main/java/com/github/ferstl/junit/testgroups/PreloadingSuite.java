@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.Statement;
+
+/**
+ * {@link Suite} that runs the test classes of a serial {@link TestGroupComputer}. Right before a test class runs, the
+ * suite checks whether its test groups failed fast or exhausted their time budget in the meantime. If enabled, the
+ * suite prepares the next enabled test classes with a {@link ClassPreloader} while a test class is running. Test
+ * classes that are skipped are never initialized in advance.
+ * <p>
+ * If the static initialization of a preloaded test class fails, the error is reported as a single failure of the test
+ * class instead of a failure of each of its tests.
+ * </p>
+ */
+class PreloadingSuite extends Suite {
+
+  private volatile ClassPreloader preloader;
+
+  PreloadingSuite(RunnerBuilder builder, Class<?>[] classes) throws InitializationError {
+    super(builder, classes);
+  }
+
+  @Override
+  protected Statement classBlock(RunNotifier notifier) {
+    final Statement statement = super.classBlock(notifier);
+    return new Statement() {
+
+      @Override
+      public void evaluate() throws Throwable {
+        List<Runner> enabledChildren = enabledChildren(getChildren(), getDescription());
+        expectFixtures(enabledChildren);
+        PreloadingSuite.this.preloader = ClassPreloader.fromSystemProperty(classNames(enabledChildren), getClassLoader());
+        try {
+          statement.evaluate();
+        } finally {
+          if (PreloadingSuite.this.preloader != null) {
+            PreloadingSuite.this.preloader.close();
+          }
+        }
+      }
+    };
+  }
+
+  @Override
+  protected void runChild(Runner runner, RunNotifier notifier) {
+    if (runner instanceof SkippedClassRunner) {
+      super.runChild(runner, notifier);
+      return;
+    }
+
+    try {
+      runEnabledChild(runner, notifier);
+    } finally {
+      GroupFixtures.finished(runner.getDescription().getTestClass(), runner.getDescription(), notifier);
+    }
+  }
+
+  private void runEnabledChild(Runner runner, RunNotifier notifier) {
+    if (TestGroupRunnerBuilder.skipStopped(runner, notifier)) {
+      return;
+    }
+
+    ClassPreloader preloader = this.preloader;
+    if (preloader != null && runner.getDescription().getClassName() != null) {
+      try {
+        preloader.load(runner.getDescription().getClassName());
+      } catch (ClassNotFoundException e) {
+        // The runner reports the missing class itself.
+      } catch (LinkageError e) {
+        // Report the original error of the static initialization instead of a NoClassDefFoundError.
+        notifier.fireTestFailure(new Failure(runner.getDescription(), e));
+        return;
+      }
+    }
+
+    super.runChild(runner, notifier);
+  }
+
+  static List<String> childClassNames(Description description) {
+    List<String> classNames = new ArrayList<>();
+    for (Description child : description.getChildren()) {
+      classNames.add(child.getClassName());
+    }
+
+    return classNames;
+  }
+
+  /**
+   * Returns the children that are not skipped, in the order in which they run.
+   *
+   * @param children All children of a suite.
+   * @param description The description of the suite, which only contains the children that remain after filtering.
+   */
+  static List<Runner> enabledChildren(List<Runner> children, Description description) {
+    Map<Description, Runner> runners = new HashMap<>();
+    for (Runner runner : children) {
+      if (!(runner instanceof SkippedClassRunner)) {
+        runners.put(runner.getDescription(), runner);
+      }
+    }
+
+    // The description contains the test classes in the order in which they run, i.e. after sorting and filtering.
+    List<Runner> enabledChildren = new ArrayList<>();
+    for (Description child : description.getChildren()) {
+      Runner runner = runners.get(child);
+      if (runner != null) {
+        enabledChildren.add(runner);
+      }
+    }
+
+    return enabledChildren;
+  }
+
+  /**
+   * Group fixtures are torn down as soon as all enabled test classes of their test groups have finished.
+   */
+  static void expectFixtures(List<Runner> enabledChildren) {
+    for (Runner runner : enabledChildren) {
+      Class<?> testClass = runner.getDescription().getTestClass();
+      if (testClass != null) {
+        GroupFixtures.expect(testClass);
+      }
+    }
+  }
+
+  private static List<String> classNames(List<Runner> runners) {
+    List<String> classNames = new ArrayList<>();
+    for (Runner runner : runners) {
+      if (runner.getDescription().getClassName() != null) {
+        classNames.add(runner.getDescription().getClassName());
+      }
+    }
+
+    return classNames;
+  }
+
+  private ClassLoader getClassLoader() {
+    for (Runner runner : getChildren()) {
+      Class<?> testClass = runner.getDescription().getTestClass();
+      if (testClass != null) {
+        return testClass.getClassLoader();
+      }
+    }
+
+    return PreloadingSuite.class.getClassLoader();
+  }
+}
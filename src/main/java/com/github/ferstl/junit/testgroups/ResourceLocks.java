@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Striped locks for the shared resources of test groups, e.g.
+ * {@code -Dtestgroup.resources=integration:db,web:port:8080}. A test class uses the resources of all its test groups.
+ * Each resource is mapped to one of a fixed number of stripes, so test classes with conflicting resources are
+ * serialized while all others may run concurrently. Two different resources may share a stripe, which only reduces the
+ * concurrency but never the correctness. There is no global lock.
+ */
+final class ResourceLocks {
+
+  /** System property for the resources per test group. */
+  static final String RESOURCES_PROPERTY = "testgroup.resources";
+
+  private static final int[] NO_STRIPES = new int[0];
+  private static final int DEFAULT_STRIPES = 64;
+
+  private final Map<String, List<String>> resourcesByGroup;
+  private final Semaphore[] stripes;
+  private final ConcurrentMap<Class<?>, int[]> stripesByClass;
+
+  ResourceLocks(Map<String, List<String>> resourcesByGroup, int stripeCount) {
+    if (Integer.bitCount(stripeCount) != 1) {
+      throw new IllegalArgumentException("The number of stripes must be a power of two: " + stripeCount);
+    }
+
+    this.resourcesByGroup = resourcesByGroup;
+    this.stripes = new Semaphore[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      this.stripes[i] = new Semaphore(1, true);
+    }
+    this.stripesByClass = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Creates the locks for the resources defined by the system property {@value #RESOURCES_PROPERTY}.
+   */
+  static ResourceLocks fromSystemProperties() {
+    return new ResourceLocks(GroupSettings.read(RESOURCES_PROPERTY), DEFAULT_STRIPES);
+  }
+
+  boolean isEmpty() {
+    return this.resourcesByGroup.isEmpty();
+  }
+
+  /**
+   * Returns the indices of the stripes the given test class has to lock in ascending order. Locking them in this order
+   * guarantees that test classes never deadlock each other.
+   */
+  int[] getStripes(Class<?> testClass) {
+    int[] stripes = this.stripesByClass.get(testClass);
+    if (stripes == null) {
+      stripes = computeStripes(testClass);
+      this.stripesByClass.putIfAbsent(testClass, stripes);
+    }
+
+    return stripes;
+  }
+
+  Semaphore getStripe(int index) {
+    return this.stripes[index];
+  }
+
+  private int[] computeStripes(Class<?> testClass) {
+    BitSet indices = new BitSet(this.stripes.length);
+    for (String group : TestGroupCache.declaredGroups(testClass)) {
+      List<String> resources = this.resourcesByGroup.get(group);
+      for (String resource : resources != null ? resources : Collections.<String>emptyList()) {
+        indices.set(stripeIndex(resource));
+      }
+    }
+
+    if (indices.isEmpty()) {
+      return NO_STRIPES;
+    }
+
+    int[] stripes = new int[indices.cardinality()];
+    for (int i = indices.nextSetBit(0), j = 0; i >= 0; i = indices.nextSetBit(i + 1), j++) {
+      stripes[j] = i;
+    }
+
+    return stripes;
+  }
+
+  private int stripeIndex(String resource) {
+    int hash = resource.hashCode();
+
+    return (hash ^ (hash >>> 16)) & (this.stripes.length - 1);
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import com.github.ferstl.junit.testgroups.Timing.Kind;
+
+/**
+ * Deterministic assignment of test classes to one of several shards, e.g. {@code -Dtestgroup.shard=3/8} to run the
+ * third of eight shards. Every shard computes the same assignment without any coordination:
+ * <ul>
+ * <li>Test classes with a recorded duration are distributed longest first, each to the shard with the least total
+ * duration so far. The durations are read from the file defined by {@code -Dtestgroup.shard.durations}. This is
+ * either a history file written by {@link TimingRecorder} or a properties file which maps class names to
+ * milliseconds.</li>
+ * <li>All other test classes are assigned by a hash of their name.</li>
+ * </ul>
+ * All shards need to use the same durations file. The longest first distribution balances the durations of all test
+ * classes in this file, whether they are enabled or not. A durations file that contains the test classes of other
+ * test groups may therefore lead to unbalanced shards.
+ */
+final class Shard {
+
+  /** System property that selects a shard, e.g. {@code 3/8}. */
+  static final String SHARD_PROPERTY = "testgroup.shard";
+  /** System property with the location of the durations file. */
+  static final String DURATIONS_PROPERTY = "testgroup.shard.durations";
+
+  private static final Shard ALL = new Shard(null, null, 1, 1, Collections.<String, Integer>emptyMap());
+  private static final AtomicReference<Shard> CURRENT = new AtomicReference<>(ALL);
+
+  private final String value;
+  private final String durationsFile;
+  private final int index;
+  private final int total;
+  private final Map<String, Integer> assignments;
+
+  private Shard(String value, String durationsFile, int index, int total, Map<String, Integer> assignments) {
+    this.value = value;
+    this.durationsFile = durationsFile;
+    this.index = index;
+    this.total = total;
+    this.assignments = assignments;
+  }
+
+  /**
+   * Returns the shard selected by the system property {@value #SHARD_PROPERTY}. If the property is not set, the returned
+   * shard contains all test classes. The shard is created again when the system property or the location of the
+   * durations file changes.
+   *
+   * @throws IllegalArgumentException If the system property or the durations file is not valid.
+   */
+  static Shard current() {
+    String value = System.getProperty(SHARD_PROPERTY);
+    String durationsFile = value != null ? System.getProperty(DURATIONS_PROPERTY) : null;
+    Shard shard = CURRENT.get();
+
+    if (!equals(shard.value, value) || !equals(shard.durationsFile, durationsFile)) {
+      shard = value != null ? create(value, durationsFile) : ALL;
+      CURRENT.set(shard);
+    }
+
+    return shard;
+  }
+
+  static Shard create(String value, String durationsFile) {
+    String[] parts = value.trim().split("/");
+    int index;
+    int total;
+    try {
+      index = Integer.parseInt(parts[0].trim());
+      total = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : -1;
+    } catch (NumberFormatException e) {
+      index = -1;
+      total = -1;
+    }
+
+    if (total < 1 || index < 1 || index > total) {
+      throw new IllegalArgumentException("Invalid shard '" + value + "' in system property " + SHARD_PROPERTY + ". Expected <index>/<total>, e.g. 3/8.");
+    }
+
+    return new Shard(value, durationsFile, index, total, assign(readDurations(durationsFile), total));
+  }
+
+  /**
+   * Returns {@code true} if the given test class belongs to this shard.
+   */
+  boolean contains(String className) {
+    if (this.total == 1) {
+      return true;
+    }
+
+    Integer assignment = this.assignments.get(className);
+    return (assignment != null ? assignment : hashAssignment(className, this.total)) == this.index;
+  }
+
+  @Override
+  public String toString() {
+    return this.index + "/" + this.total;
+  }
+
+  private static boolean equals(String s1, String s2) {
+    return s1 == null ? s2 == null : s1.equals(s2);
+  }
+
+  private static int hashAssignment(String className, int total) {
+    // Spread the bits of the (specified and therefore stable) String hash code.
+    int hash = className.hashCode() * 0x9E3779B9;
+    hash ^= hash >>> 16;
+
+    return (hash & Integer.MAX_VALUE) % total + 1;
+  }
+
+  /**
+   * Longest processing time first: Assigns each class, longest first, to the shard with the lowest total duration.
+   */
+  private static Map<String, Integer> assign(final Map<String, Long> durations, int total) {
+    List<String> classNames = new ArrayList<>(durations.keySet());
+    Collections.sort(classNames, new Comparator<String>() {
+
+      @Override
+      public int compare(String c1, String c2) {
+        int result = durations.get(c2).compareTo(durations.get(c1));
+        return result != 0 ? result : c1.compareTo(c2);
+      }
+    });
+
+    long[] loads = new long[total];
+    Map<String, Integer> assignments = new HashMap<>();
+    for (String className : classNames) {
+      int lowest = 0;
+      for (int i = 1; i < total; i++) {
+        if (loads[i] < loads[lowest]) {
+          lowest = i;
+        }
+      }
+
+      loads[lowest] += durations.get(className);
+      assignments.put(className, lowest + 1);
+    }
+
+    return assignments;
+  }
+
+  private static Map<String, Long> readDurations(String durationsFile) {
+    if (durationsFile == null || durationsFile.trim().isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    File file = new File(durationsFile);
+    if (!file.isFile()) {
+      return Collections.emptyMap();
+    }
+
+    if (TimingStore.isHistoryFile(file)) {
+      return readHistory(file);
+    }
+
+    Properties properties = new Properties();
+    try (InputStream is = Files.newInputStream(file.toPath()); Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to read durations file " + file, e);
+    }
+
+    Map<String, Long> durations = new HashMap<>();
+    for (String className : properties.stringPropertyNames()) {
+      try {
+        durations.put(className, Long.parseLong(properties.getProperty(className).trim()));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid duration for " + className + " in " + file, e);
+      }
+    }
+
+    return durations;
+  }
+
+  private static Map<String, Long> readHistory(File file) {
+    Map<String, Long> durations = new HashMap<>();
+    try {
+      for (Timing timing : new TimingStore(file, TimingStore.DEFAULT_WEIGHT).load(Kind.CLASS).values()) {
+        durations.put(timing.getName(), TimeUnit.NANOSECONDS.toMillis(timing.getWallTime()));
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to read history file " + file, e);
+    }
+
+    return durations;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.Collection;
+
+/**
+ * Reason why a test class or a test method is skipped. The reason is only built when it is actually reported. This
+ * class does not depend on JUnit 4, so it is shared by the JUnit 4 runners and rules and by the JUnit Platform
+ * integration.
+ */
+final class SkipReason {
+
+  private final Object[] reasonParts;
+  private volatile String reason;
+
+  /**
+   * @param reasonParts The parts of the reason. They are concatenated when the reason is requested the first time.
+   */
+  SkipReason(Object... reasonParts) {
+    this.reasonParts = reasonParts;
+  }
+
+  /**
+   * Creates the reason for test groups which are not selected.
+   */
+  static SkipReason disabledGroups(Object selection, Collection<String> testGroups) {
+    return new SkipReason("None of the test groups ", testGroups, " are enabled. Enabled test groups: ", selection);
+  }
+
+  String getReason() {
+    String reason = this.reason;
+    if (reason == null) {
+      StringBuilder sb = new StringBuilder();
+      for (Object part : this.reasonParts) {
+        sb.append(part);
+      }
+      reason = sb.toString();
+      this.reason = reason;
+    }
+
+    return reason;
+  }
+
+  @Override
+  public String toString() {
+    return getReason();
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import org.junit.Ignore;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
+
+/**
+ * Runner for test classes whose test group is disabled. It reports the test class as ignored, like JUnit does for
+ * classes annotated with {@link Ignore}, without building the test class' actual runner and without creating an
+ * exception. The reason is available from the {@link Ignore} annotation of the description and is only built when a
+ * listener asks for it.
+ */
+class SkippedClassRunner extends Runner {
+
+  private final Description description;
+
+  SkippedClassRunner(Class<?> testClass, SkipReason skipReason) {
+    Annotation[] classAnnotations = testClass.getAnnotations();
+    Annotation[] annotations = Arrays.copyOf(classAnnotations, classAnnotations.length + 1);
+    annotations[classAnnotations.length] = new IgnoreReason(skipReason);
+
+    this.description = Description.createSuiteDescription(testClass.getName(), annotations);
+  }
+
+  @Override
+  public Description getDescription() {
+    return this.description;
+  }
+
+  @Override
+  public void run(RunNotifier notifier) {
+    notifier.fireTestIgnored(this.description);
+  }
+
+  /**
+   * {@link Ignore} annotation whose value is a {@link SkipReason}.
+   */
+  @SuppressWarnings("all")
+  static final class IgnoreReason implements Ignore {
+
+    private final SkipReason skipReason;
+
+    IgnoreReason(SkipReason skipReason) {
+      this.skipReason = skipReason;
+    }
+
+    @Override
+    public String value() {
+      return this.skipReason.getReason();
+    }
+
+    @Override
+    public Class<? extends Annotation> annotationType() {
+      return Ignore.class;
+    }
+  }
+}
@@ -30,12 +30,13 @@ import java.lang.annotation.Target;
 
 /**
  * Assigns a JUnit test to a named group. Together with the class rule {@link TestGroupRule} the grouped tests will only
- * be executed when they are enabled by a system property.
+ * be executed when they are enabled by a system property. Test methods can be grouped as well. They need the rule
+ * {@link TestGroupMethodRule} and belong to their own test groups and to the test groups of their class.
  */
 @Inherited
 @Documented
 @Retention(RetentionPolicy.RUNTIME)
-@Target({ElementType.PACKAGE, ElementType.TYPE})
+@Target({ElementType.PACKAGE, ElementType.TYPE, ElementType.METHOD})
 public @interface TestGroup {
   static final String DEFAULT_KEY = "testgroup";
   static final String ALL_GROUPS = "all";
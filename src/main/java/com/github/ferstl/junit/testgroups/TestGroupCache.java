@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.lang.reflect.Modifier;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe cache for everything {@link TestGroupRule} resolves repeatedly: the test group of a class and its package,
+ * the parsed enabled test groups per key and the final decision per {@link TestGroup} annotation and per test method.
+ * Enabled test groups are re-parsed and their {@link GroupExpression} is recompiled whenever the value of their system
+ * property changes.
+ */
+final class TestGroupCache {
+
+  private static final ClassValue<ResolvedTestGroup> CLASS_GROUPS = new ClassValue<ResolvedTestGroup>() {
+
+    @Override
+    protected ResolvedTestGroup computeValue(Class<?> type) {
+      TestGroup testGroup = type.getAnnotation(TestGroup.class);
+      if (testGroup != null) {
+        return new ResolvedTestGroup(testGroup);
+      }
+
+      // Inner classes, e.g. JUnit Jupiter's @Nested test classes, inherit the test group of their enclosing class.
+      Class<?> enclosingClass = type.getEnclosingClass();
+      boolean inner = enclosingClass != null && !Modifier.isStatic(type.getModifiers());
+
+      return inner ? CLASS_GROUPS.get(enclosingClass) : PACKAGE_GROUPS_BY_CLASS.get(type);
+    }
+  };
+
+  private static final ClassValue<ResolvedTestGroup> PACKAGE_GROUPS_BY_CLASS = new ClassValue<ResolvedTestGroup>() {
+
+    @Override
+    protected ResolvedTestGroup computeValue(Class<?> type) {
+      ClassLoader classLoader = type.getClassLoader();
+      if (classLoader == null) {
+        return ResolvedTestGroup.NONE;
+      }
+
+      String className = type.getName();
+      int lastDot = className.lastIndexOf('.');
+
+      return lastDot < 0 ? ResolvedTestGroup.NONE : packageRoot(classLoader).find(className.substring(0, lastDot)).resolve(classLoader);
+    }
+  };
+
+  private static final ClassValue<ConcurrentMap<TestGroup, Decisions>> METHOD_DECISIONS = new ClassValue<ConcurrentMap<TestGroup, Decisions>>() {
+
+    @Override
+    protected ConcurrentMap<TestGroup, Decisions> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  /** Package trie per class loader. The class loaders are weakly referenced so they can be garbage collected. */
+  private static final Map<ClassLoader, PackageNode> PACKAGE_ROOTS = new WeakHashMap<>();
+  private static final ConcurrentMap<String, EnabledGroups> ENABLED_GROUPS = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<TestGroup, Decisions> DECISIONS = new ConcurrentHashMap<>();
+
+  private TestGroupCache() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Returns the test group declared on the given class (including inherited test groups), on the enclosing class of an
+   * inner class or on its package.
+   */
+  static TestGroup testGroup(Class<?> testClass) {
+    return CLASS_GROUPS.get(testClass).testGroup;
+  }
+
+  /**
+   * Returns the test group declared on the package of the given class or on its nearest parent package.
+   */
+  static TestGroup packageTestGroup(Class<?> testClass) {
+    return PACKAGE_GROUPS_BY_CLASS.get(testClass).testGroup;
+  }
+
+  /**
+   * Returns the enabled test groups for the given key, i.e. the test groups that its selection does not negate (see
+   * {@link GroupExpression#selectedGroups()}). The system property is read on each call but only parsed when its value
+   * changed.
+   */
+  static Collection<String> enabledTestGroups(String key) {
+    return enabledGroups(key).groups;
+  }
+
+  /**
+   * Returns {@code null} if the given test group is enabled or a {@link SkipReason} if it is disabled.
+   */
+  static SkipReason check(TestGroup testGroup) {
+    return decisions(testGroup).check();
+  }
+
+  /**
+   * Returns {@code null} if the test group of a test method is enabled or a {@link SkipReason} if it is disabled. A
+   * test method belongs to its own test groups and to the test groups of its class (or package) if they have the same
+   * key.
+   */
+  static SkipReason checkMethod(Class<?> testClass, TestGroup methodGroup) {
+    return methodDecisions(testClass, methodGroup).check();
+  }
+
+  /**
+   * Returns the declared test groups of the given class or an empty collection if it does not have a test group.
+   */
+  static Collection<String> declaredGroups(Class<?> testClass) {
+    return declaredGroups(testGroup(testClass));
+  }
+
+  /**
+   * Returns the declared test groups of the given test group or an empty collection if it is {@code null}.
+   */
+  static Collection<String> declaredGroups(TestGroup testGroup) {
+    return testGroup != null ? decisions(testGroup).getDeclaredGroups() : Collections.<String>emptyList();
+  }
+
+  private static Decisions decisions(TestGroup testGroup) {
+    Decisions decisions = DECISIONS.get(testGroup);
+    if (decisions == null) {
+      decisions = new Decisions(testGroup.key(), TestGroupDecisions.getDeclaredTestGroups(testGroup));
+      Decisions existing = DECISIONS.putIfAbsent(testGroup, decisions);
+      decisions = existing != null ? existing : decisions;
+    }
+
+    return decisions;
+  }
+
+  private static Decisions methodDecisions(Class<?> testClass, TestGroup methodGroup) {
+    ConcurrentMap<TestGroup, Decisions> classDecisions = METHOD_DECISIONS.get(testClass);
+    Decisions decisions = classDecisions.get(methodGroup);
+    if (decisions == null) {
+      Collection<String> declaredGroups = new LinkedHashSet<>(TestGroupDecisions.getDeclaredTestGroups(methodGroup));
+      TestGroup classGroup = testGroup(testClass);
+      if (classGroup != null && classGroup.key().equals(methodGroup.key())) {
+        declaredGroups.addAll(TestGroupDecisions.getDeclaredTestGroups(classGroup));
+      }
+
+      decisions = new Decisions(methodGroup.key(), declaredGroups);
+      Decisions existing = classDecisions.putIfAbsent(methodGroup, decisions);
+      decisions = existing != null ? existing : decisions;
+    }
+
+    return decisions;
+  }
+
+  private static EnabledGroups enabledGroups(String key) {
+    String value = System.getProperty(key);
+    EnabledGroups enabledGroups = ENABLED_GROUPS.get(key);
+
+    if (enabledGroups == null || !equal(enabledGroups.value, value)) {
+      enabledGroups = new EnabledGroups(value);
+      ENABLED_GROUPS.put(key, enabledGroups);
+    }
+
+    return enabledGroups;
+  }
+
+  private static PackageNode packageRoot(ClassLoader classLoader) {
+    // Only called once per test class, so a lock is good enough.
+    synchronized (PACKAGE_ROOTS) {
+      PackageNode root = PACKAGE_ROOTS.get(classLoader);
+      if (root == null) {
+        root = new PackageNode(null, "");
+        PACKAGE_ROOTS.put(classLoader, root);
+      }
+
+      return root;
+    }
+  }
+
+  private static boolean equal(String s1, String s2) {
+    return s1 == null ? s2 == null : s1.equals(s2);
+  }
+
+  /**
+   * {@link ClassValue} and {@link ConcurrentHashMap} do not support {@code null} values, so this holder is used instead.
+   */
+  private static final class ResolvedTestGroup {
+
+    static final ResolvedTestGroup NONE = new ResolvedTestGroup(null);
+
+    final TestGroup testGroup;
+
+    ResolvedTestGroup(TestGroup testGroup) {
+      this.testGroup = testGroup;
+    }
+  }
+
+  /**
+   * Node of the package trie which is shared by all test classes of a class loader. Each node resolves the test group
+   * of its package at most once, even if the package does not contain any loaded class. Packages without a test group
+   * inherit the test group of their nearest parent package.
+   */
+  private static final class PackageNode {
+
+    private final PackageNode parent;
+    private final String name;
+    private final ConcurrentMap<String, PackageNode> children;
+    private volatile ResolvedTestGroup resolved;
+
+    PackageNode(PackageNode parent, String name) {
+      this.parent = parent;
+      this.name = name;
+      this.children = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the node of the given package, which is a sub package of this node, and creates it if necessary.
+     */
+    PackageNode find(String packageName) {
+      PackageNode node = this;
+      int start = 0;
+      while (start < packageName.length()) {
+        int end = packageName.indexOf('.', start);
+        end = end < 0 ? packageName.length() : end;
+        node = node.child(packageName.substring(start, end));
+        start = end + 1;
+      }
+
+      return node;
+    }
+
+    ResolvedTestGroup resolve(ClassLoader classLoader) {
+      ResolvedTestGroup resolved = this.resolved;
+      if (resolved == null) {
+        synchronized (this) {
+          resolved = this.resolved;
+          if (resolved == null) {
+            TestGroup testGroup = this.parent != null ? loadPackageTestGroup(classLoader) : null;
+            if (testGroup != null) {
+              resolved = new ResolvedTestGroup(testGroup);
+            } else {
+              resolved = this.parent != null ? this.parent.resolve(classLoader) : ResolvedTestGroup.NONE;
+            }
+            this.resolved = resolved;
+          }
+        }
+      }
+
+      return resolved;
+    }
+
+    private PackageNode child(String segment) {
+      PackageNode child = this.children.get(segment);
+      if (child == null) {
+        child = new PackageNode(this, this.parent != null ? this.name + "." + segment : segment);
+        PackageNode existing = this.children.putIfAbsent(segment, child);
+        child = existing != null ? existing : child;
+      }
+
+      return child;
+    }
+
+    private TestGroup loadPackageTestGroup(ClassLoader classLoader) {
+      try {
+        return Class.forName(this.name + ".package-info", false, classLoader).getAnnotation(TestGroup.class);
+      } catch (ClassNotFoundException | LinkageError e) {
+        return null;
+      }
+    }
+  }
+
+  private static final class EnabledGroups {
+
+    final String value;
+    final Collection<String> groups;
+    final GroupExpression expression;
+
+    EnabledGroups(String value) {
+      this.value = value;
+      this.expression = GroupExpression.compile(value);
+      this.groups = Collections.unmodifiableCollection(this.expression.selectedGroups());
+    }
+  }
+
+  /**
+   * Key and declared test groups of a {@link TestGroup} annotation together with the last decision made for them.
+   */
+  static final class Decisions {
+
+    private final String key;
+    private final Collection<String> declaredGroups;
+    private final BitSet declaredGroupIds;
+    private volatile Decision lastDecision;
+
+    Decisions(String key, Collection<String> declaredGroups) {
+      this.key = key;
+      this.declaredGroups = Collections.unmodifiableCollection(declaredGroups);
+      this.declaredGroupIds = GroupExpression.toBitSet(declaredGroups);
+    }
+
+    String getKey() {
+      return this.key;
+    }
+
+    Collection<String> getDeclaredGroups() {
+      return this.declaredGroups;
+    }
+
+    /**
+     * Returns {@code null} if the test groups are enabled or a {@link SkipReason} if they are disabled.
+     */
+    SkipReason check() {
+      EnabledGroups enabledGroups = enabledGroups(this.key);
+      Decision decision = this.lastDecision;
+
+      if (decision == null || decision.enabledGroups != enabledGroups) {
+        SkipReason skipReason = enabledGroups.expression.matches(this.declaredGroupIds)
+            ? null : SkipReason.disabledGroups(enabledGroups.expression, this.declaredGroups);
+        decision = new Decision(enabledGroups, skipReason);
+        this.lastDecision = decision;
+      }
+
+      return decision.skipReason;
+    }
+  }
+
+  private static final class Decision {
+
+    final EnabledGroups enabledGroups;
+    final SkipReason skipReason;
+
+    Decision(EnabledGroups enabledGroups, SkipReason skipReason) {
+      this.enabledGroups = enabledGroups;
+      this.skipReason = skipReason;
+    }
+  }
+}
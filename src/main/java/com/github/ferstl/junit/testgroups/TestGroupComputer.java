@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import org.junit.runner.Computer;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Sortable;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+
+/**
+ * {@link Computer} that builds the runners of all test classes with a {@link TestGroupRunnerBuilder}. Test classes with
+ * a disabled test group are skipped without building their actual runners:
+ * <pre>
+ * JUnitCore.runClasses(new TestGroupComputer(), MyTest.class, MyOtherTest.class);
+ * </pre>
+ * A computer created by {@link #parallel()} runs the test classes in parallel. The number of threads is defined by the
+ * system property {@code testgroup.parallelism} (default: number of available processors). The number of concurrently
+ * running test classes can be limited per test group with the system property {@code testgroup.concurrency}, e.g.
+ * {@code -Dtestgroup.concurrency=integration:2,db:1}. Test groups without a limit (or with a limit of {@code 0}) are
+ * unbounded.
+ * <p>
+ * The system property {@code testgroup.order} sorts the test classes by their recorded history (see
+ * {@link TestGroupSorter}): {@code longest} runs the longest test classes first and {@code failed} runs the most recently
+ * failed test classes first.
+ * </p>
+ * <p>
+ * With {@code -Dtestgroup.preload=n}, a serial computer loads and initializes the next {@code n} enabled test classes
+ * on a background thread while the current test class is running (see {@link ClassPreloader}).
+ * </p>
+ */
+public class TestGroupComputer extends Computer {
+
+  private final boolean parallel;
+
+  /**
+   * Creates a computer that runs all test classes serially.
+   */
+  public TestGroupComputer() {
+    this(false);
+  }
+
+  private TestGroupComputer(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * Creates a computer that runs the test classes in parallel.
+   */
+  public static TestGroupComputer parallel() {
+    return new TestGroupComputer(true);
+  }
+
+  @Override
+  public Runner getSuite(RunnerBuilder builder, Class<?>[] classes) throws InitializationError {
+    Runner suite;
+    if (this.parallel) {
+      suite = new GroupScheduledSuite(new TestGroupRunnerBuilder(builder), classes, GroupScheduler.fromSystemProperties());
+    } else {
+      suite = new PreloadingSuite(new TestGroupRunnerBuilder(builder), classes);
+    }
+
+    TestGroupSorter sorter = TestGroupSorter.fromSystemProperty();
+    if (sorter != null && suite instanceof Sortable) {
+      ((Sortable) suite).sort(sorter);
+    }
+
+    return suite;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.lang.reflect.Method;
+import org.junit.jupiter.api.extension.ConditionEvaluationResult;
+import org.junit.jupiter.api.extension.ExecutionCondition;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * JUnit Jupiter {@link ExecutionCondition} that disables test classes and test methods of disabled {@link TestGroup}s.
+ * It is the counterpart of {@link TestGroupRule} and a fallback for launchers which do not apply the
+ * {@link TestGroupPostDiscoveryFilter}. Since the condition is evaluated right before a test class runs, it also skips
+ * test classes of test groups that exhausted their time budget or that failed fast:
+ *
+ * <pre>
+ * &#064;TestGroup("integration")
+ * &#064;ExtendWith(TestGroupCondition.class)
+ * class MyIntegrationTest {
+ *   ...
+ * }
+ * </pre>
+ */
+public class TestGroupCondition implements ExecutionCondition {
+
+  @Override
+  public ConditionEvaluationResult evaluateExecutionCondition(ExtensionContext context) {
+    Class<?> testClass = context.getTestClass().orElse(null);
+    if (testClass == null) {
+      return ConditionEvaluationResult.enabled(null);
+    }
+
+    // Test methods are only evaluated if their test class is enabled.
+    Method testMethod = context.getTestMethod().orElse(null);
+    SkipReason skipReason = testMethod != null
+        ? TestGroupDecisions.checkTestMethod(testClass, testMethod.getAnnotation(TestGroup.class))
+        : TestGroupDecisions.decide(TestGroupDecisions.findTestGroup(testClass), testClass);
+
+    return skipReason != null ? ConditionEvaluationResult.disabled(skipReason.getReason()) : ConditionEvaluationResult.enabled(null);
+  }
+}
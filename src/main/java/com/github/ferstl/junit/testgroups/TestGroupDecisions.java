@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * Decides whether test classes and test methods are run or skipped. This class does not depend on JUnit 4, so the JUnit
+ * Platform integration ({@link TestGroupPostDiscoveryFilter}, {@link TestGroupCondition}) works without JUnit 4 on the
+ * class path. The JUnit 4 integration, e.g. the {@link TestGroupRule}, uses the same decisions.
+ */
+final class TestGroupDecisions {
+
+  private TestGroupDecisions() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Checks whether the given test class will be executed. This is the case if its test group is enabled and it belongs
+   * to the current {@link Shard}. In incremental mode, test classes that did not change since their last successful
+   * run are skipped. Test classes of test groups that exhausted their {@link GroupBudgets time budget} or that
+   * {@link GroupFailFast failed fast} are skipped as well. The decision is not recorded, see
+   * {@link #decide(TestGroup, Class)}.
+   *
+   * @param testGroup The test group of the test class. May be {@code null}.
+   * @param testClass The test class.
+   * @return {@code null} if the test class will be executed or a {@link SkipReason} describing why it is skipped.
+   */
+  static SkipReason checkTestClass(TestGroup testGroup, Class<?> testClass) {
+    SkipReason skipReason = checkSelection(testGroup, testClass);
+
+    return skipReason != null ? skipReason : checkProgress(testClass);
+  }
+
+  /**
+   * Checks whether the given test class will be executed and records the decision with the
+   * {@link TestGroupInstrumentation}. This method is only called where the test class is actually run or skipped, so
+   * the metrics count test classes and not evaluations.
+   *
+   * @see #checkTestClass(TestGroup, Class)
+   */
+  static SkipReason decide(TestGroup testGroup, Class<?> testClass) {
+    long start = TestGroupInstrumentation.start();
+    SkipReason skipReason = checkTestClass(testGroup, testClass);
+    TestGroupInstrumentation.decision(testGroup, testClass, skipReason, start);
+
+    return skipReason;
+  }
+
+  /**
+   * Like {@link #decide(TestGroup, Class)} but only records the decision if the test class is skipped. This method is
+   * used by runner builders: The run of an enabled test class is recorded when it actually runs, by its
+   * {@link TestGroupRule}.
+   */
+  static SkipReason decideSkip(TestGroup testGroup, Class<?> testClass) {
+    long start = TestGroupInstrumentation.start();
+    SkipReason skipReason = checkTestClass(testGroup, testClass);
+    if (skipReason != null) {
+      TestGroupInstrumentation.decision(testGroup, testClass, skipReason, start);
+    }
+
+    return skipReason;
+  }
+
+  /**
+   * Checks again whether a test class that was selected when its runner was built can still run, i.e. whether its test
+   * groups did neither {@link GroupFailFast fail fast} nor exhaust their {@link GroupBudgets time budget} in the
+   * meantime. Suites call this method right before they run a test class. A skip is recorded with the
+   * {@link TestGroupInstrumentation}.
+   *
+   * @return {@code null} if the test class can run or a {@link SkipReason} describing why it is skipped.
+   */
+  static SkipReason recheck(Class<?> testClass) {
+    long start = TestGroupInstrumentation.start();
+    SkipReason skipReason = checkProgress(testClass);
+    if (skipReason != null) {
+      TestGroupInstrumentation.decision(findTestGroup(testClass), testClass, skipReason, start);
+    }
+
+    return skipReason;
+  }
+
+  /**
+   * Checks whether the given test class is selected for this run, i.e. whether its test group is enabled, whether it
+   * belongs to the current {@link Shard} and, in incremental mode, whether it changed since its last successful run.
+   * Unlike {@link #checkTestClass(TestGroup, Class)}, this check does not depend on the progress of the run (time
+   * budgets and fail-fast), so it can be done before any test runs, e.g. during test discovery.
+   *
+   * @param testGroup The test group of the test class. May be {@code null}.
+   * @param testClass The test class.
+   * @return {@code null} if the test class is selected or a {@link SkipReason} describing why it is skipped.
+   */
+  static SkipReason checkSelection(TestGroup testGroup, Class<?> testClass) {
+    SkipReason skipReason = checkTestGroup(testGroup);
+    if (skipReason != null) {
+      return skipReason;
+    }
+
+    Shard shard = Shard.current();
+    if (!shard.contains(testClass.getName())) {
+      return new SkipReason("Test class ", testClass.getName(), " is not part of shard ", shard);
+    }
+
+    IncrementalState incrementalState = IncrementalState.current();
+    if (incrementalState != null && incrementalState.isUnchanged(testClass)) {
+      return new SkipReason("Test class ", testClass.getName(), " did not change since its last successful run");
+    }
+
+    return null;
+  }
+
+  /**
+   * Checks the parts of the decision that depend on the progress of the run: fail-fast and time budgets.
+   */
+  private static SkipReason checkProgress(Class<?> testClass) {
+    SkipReason skipReason = GroupFailFast.check(testClass);
+
+    return skipReason != null ? skipReason : GroupBudgets.current().check(testClass);
+  }
+
+  /**
+   * Checks whether the given test group is enabled.
+   *
+   * @param testGroup The test group to check. May be {@code null}.
+   * @return {@code null} if the test group is enabled or a {@link SkipReason} describing why it is disabled.
+   */
+  static SkipReason checkTestGroup(TestGroup testGroup) {
+    if (testGroup == null) {
+      return null;
+    }
+
+    return TestGroupCache.check(testGroup);
+  }
+
+  /**
+   * Checks whether the given test method will be executed. This method does not check the test class itself.
+   *
+   * @param testClass The test class.
+   * @param methodGroup The test group of the test method. May be {@code null}.
+   * @return {@code null} if the test method will be executed or a {@link SkipReason} describing why it is skipped.
+   */
+  static SkipReason checkTestMethod(Class<?> testClass, TestGroup methodGroup) {
+    if (methodGroup == null) {
+      return null;
+    }
+
+    return TestGroupCache.checkMethod(testClass, methodGroup);
+  }
+
+  static TestGroup findTestGroup(Class<?> testClass) {
+    return TestGroupCache.testGroup(testClass);
+  }
+
+  static Collection<String> getDeclaredTestGroups(TestGroup testGroup) {
+    String[] declaredGroups = testGroup.value();
+    if (declaredGroups.length != 0) {
+      return new HashSet<>(Arrays.asList(declaredGroups));
+    }
+
+    return Collections.emptyList();
+  }
+
+  static Collection<String> split(String commaSeparated) {
+    if (commaSeparated == null || commaSeparated.trim().isEmpty()) {
+      return Collections.emptySet();
+    }
+
+    String[] splits = commaSeparated.split(",+");
+
+    return new HashSet<>(Arrays.asList(splits));
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Filter;
+
+/**
+ * {@link Filter} that removes all tests whose test class belongs to a disabled {@link TestGroup}. Unlike
+ * {@link TestGroupRunnerBuilder}, this filter is applied after the runners were built. It is useful in places where
+ * only a filter can be plugged in, e.g. {@link org.junit.runner.Request#filterWith(Filter)}.
+ */
+public class TestGroupFilter extends Filter {
+
+  @Override
+  public boolean shouldRun(Description description) {
+    Class<?> testClass = description.getTestClass();
+    if (testClass == null) {
+      return true;
+    }
+
+    return TestGroupDecisions.checkTestClass(TestGroupDecisions.findTestGroup(testClass), testClass) == null;
+  }
+
+  @Override
+  public String describe() {
+    return "enabled test groups";
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import com.github.ferstl.junit.testgroups.TestGroupCache.Decisions;
+
+/**
+ * Index of all test classes that have a {@link TestGroup}, either declared on the class itself, inherited from a
+ * superclass or declared on the package. The index allows to decide whether a test class is enabled without loading
+ * it. It is generated at build time by the {@link TestGroupProcessor} and stored in {@value #LOCATION}.
+ * <p>
+ * The index is a UTF-8 text file. Each line contains the binary name of a test class, the key of its test group and
+ * the declared test groups, all separated by tabs. Lines starting with {@code #} are comments.
+ * </p>
+ */
+public final class TestGroupIndex {
+
+  /** Location of the index within the class path. */
+  public static final String LOCATION = "META-INF/testgroups.idx";
+
+  private static final String HEADER = "# junit-testgroups index";
+
+  private final Map<String, Decisions> entries;
+
+  TestGroupIndex() {
+    this.entries = new TreeMap<>();
+  }
+
+  /**
+   * Loads and merges all indexes that are visible to the given class loader.
+   *
+   * @param classLoader Class loader to search for {@value #LOCATION}.
+   * @return The merged index. It is empty if no index was found.
+   * @throws IOException If an index cannot be read.
+   */
+  public static TestGroupIndex load(ClassLoader classLoader) throws IOException {
+    TestGroupIndex index = new TestGroupIndex();
+    Enumeration<URL> resources = classLoader.getResources(LOCATION);
+    while (resources.hasMoreElements()) {
+      try (InputStream is = resources.nextElement().openStream()) {
+        index.read(new InputStreamReader(is, StandardCharsets.UTF_8));
+      }
+    }
+
+    return index;
+  }
+
+  /**
+   * Returns the binary names of all classes in this index.
+   */
+  public Set<String> getClassNames() {
+    return Collections.unmodifiableSet(this.entries.keySet());
+  }
+
+  /**
+   * Returns {@code true} if the given class has a test group.
+   */
+  public boolean contains(String className) {
+    return this.entries.containsKey(className);
+  }
+
+  /**
+   * Returns the key of the given class' test group or {@code null} if it has no test group.
+   */
+  public String getKey(String className) {
+    Decisions decisions = this.entries.get(className);
+    return decisions != null ? decisions.getKey() : null;
+  }
+
+  /**
+   * Returns the declared test groups of the given class. The collection is empty for classes in the implicit default
+   * group and for classes without a test group.
+   */
+  public Collection<String> getDeclaredGroups(String className) {
+    Decisions decisions = this.entries.get(className);
+    return decisions != null ? decisions.getDeclaredGroups() : Collections.<String>emptyList();
+  }
+
+  /**
+   * Decides whether the given class is enabled in the same way {@link TestGroupRule} does. Classes without a test group
+   * are enabled unless they belong to another shard.
+   *
+   * @param className Binary name of a test class.
+   * @return {@code true} if the test class is enabled.
+   */
+  public boolean isEnabled(String className) {
+    Decisions decisions = this.entries.get(className);
+    return (decisions == null || decisions.check() == null) && Shard.current().contains(className);
+  }
+
+  void add(String className, String key, Collection<String> declaredGroups) {
+    this.entries.put(className, new Decisions(key, declaredGroups));
+  }
+
+  void read(Reader reader) throws IOException {
+    BufferedReader bufferedReader = new BufferedReader(reader);
+    String line;
+    while ((line = bufferedReader.readLine()) != null) {
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      String[] fields = line.split("\t");
+      if (fields.length < 2) {
+        throw new IOException("Invalid test group index entry: " + line);
+      }
+
+      add(fields[0], fields[1], new ArrayList<>(Arrays.asList(fields).subList(2, fields.length)));
+    }
+  }
+
+  void write(Writer writer) throws IOException {
+    writer.write(HEADER);
+    writer.write('\n');
+    for (Entry<String, Decisions> entry : this.entries.entrySet()) {
+      writer.write(entry.getKey());
+      writer.write('\t');
+      writer.write(entry.getValue().getKey());
+      for (String group : entry.getValue().getDeclaredGroups()) {
+        writer.write('\t');
+        writer.write(group);
+      }
+      writer.write('\n');
+    }
+  }
+}
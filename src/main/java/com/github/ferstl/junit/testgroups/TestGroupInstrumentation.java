@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.Collection;
+
+/**
+ * Emits the {@link JfrEvents JDK Flight Recorder events} and records the {@link TestGroupMetrics JMX metrics} of this
+ * library. Flight Recorder events are only emitted if the JVM provides the {@code jdk.jfr} module. JMX metrics are only
+ * recorded if the system property {@value #METRICS_PROPERTY} is {@code true}. Without either, all methods of this class
+ * are no-ops.
+ */
+final class TestGroupInstrumentation {
+
+  /** System property that enables the JMX metrics. */
+  static final String METRICS_PROPERTY = "testgroup.metrics";
+
+  private static final boolean JFR_AVAILABLE = detectJfr();
+  private static final TestGroupMetrics METRICS = Boolean.getBoolean(METRICS_PROPERTY) ? TestGroupMetrics.register() : null;
+  private static final boolean ACTIVE = JFR_AVAILABLE || METRICS != null;
+
+  private TestGroupInstrumentation() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Returns the start time of a measurement or {@code 0} if instrumentation is disabled.
+   */
+  static long start() {
+    return ACTIVE ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the decision whether the given test class is run or skipped.
+   *
+   * @param testGroup The test group of the test class. May be {@code null}.
+   * @param testClass The test class.
+   * @param skipReason The reason why the test class is skipped or {@code null} if it is run.
+   * @param start The result of {@link #start()} before the decision was made.
+   */
+  static void decision(TestGroup testGroup, Class<?> testClass, SkipReason skipReason, long start) {
+    if (!ACTIVE) {
+      return;
+    }
+
+    long latency = System.nanoTime() - start;
+    // Groups and reason are only built if they are actually recorded.
+    if (JFR_AVAILABLE && JfrEvents.isDecisionEnabled()) {
+      JfrEvents.decision(testClass, join(groups(testGroup)), skipReason != null ? skipReason.getReason() : null, latency);
+    }
+    if (METRICS != null) {
+      METRICS.decision(groups(testGroup), skipReason != null, latency);
+    }
+  }
+
+  /**
+   * Starts the measurement of a {@link TestGroupRule} evaluation.
+   *
+   * @return A token for {@link #endRuleEvaluation(Object, Class, boolean)}.
+   */
+  static Object beginRuleEvaluation() {
+    return JFR_AVAILABLE ? JfrEvents.beginRuleEvaluation() : null;
+  }
+
+  static void endRuleEvaluation(Object token, Class<?> testClass, boolean skipped) {
+    if (token != null) {
+      JfrEvents.endRuleEvaluation(token, testClass, skipped);
+    }
+  }
+
+  /**
+   * Returns {@code true} if the execution of enabled test classes is measured, i.e. if JMX metrics or a Flight Recorder
+   * recording of the execution events are enabled.
+   */
+  static boolean isExecutionMeasured() {
+    return (JFR_AVAILABLE && JfrEvents.isExecutionEnabled()) || METRICS != null;
+  }
+
+  /**
+   * Starts the measurement of a test class execution.
+   *
+   * @return A token for {@link #endExecution(Object, TestGroup, Class, long, boolean)}.
+   */
+  static Object beginExecution() {
+    return JFR_AVAILABLE && JfrEvents.isExecutionEnabled() ? JfrEvents.beginExecution() : null;
+  }
+
+  static void endExecution(Object token, TestGroup testGroup, Class<?> testClass, long start, boolean failed) {
+    Collection<String> groups = groups(testGroup);
+    if (token != null) {
+      JfrEvents.endExecution(token, testClass, join(groups), failed);
+    }
+    if (METRICS != null) {
+      METRICS.execution(groups, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Returns the JMX metrics or {@code null} if they are disabled.
+   */
+  static TestGroupMetrics metrics() {
+    return METRICS;
+  }
+
+  /**
+   * Returns {@code true} if the JVM provides the {@code jdk.jfr} module.
+   */
+  static boolean isJfrAvailable() {
+    return JFR_AVAILABLE;
+  }
+
+  private static Collection<String> groups(TestGroup testGroup) {
+    return TestGroupCache.declaredGroups(testGroup);
+  }
+
+  private static String join(Collection<String> groups) {
+    StringBuilder sb = new StringBuilder();
+    for (String group : groups) {
+      if (sb.length() > 0) {
+        sb.append(',');
+      }
+      sb.append(group);
+    }
+
+    return sb.toString();
+  }
+
+  private static boolean detectJfr() {
+    try {
+      Class.forName("jdk.jfr.Event", false, TestGroupInstrumentation.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import com.github.ferstl.junit.testgroups.TestGroupRule.SkipStatement;
+
+/**
+ * JUnit rule that evaluates {@link TestGroup} annotations on test methods. A test method belongs to its own test groups
+ * and to the test groups of its class (or package) if they use the same key. The decision is cached per test method.
+ * This rule is supposed to be used as JUnit method rule together with the class rule {@link TestGroupRule}:
+ *
+ * <pre>
+ * &#064;TestGroup("fast")
+ * public class MyTest {
+ *   &#064;ClassRule
+ *   public static TestGroupRule testGroupRule = TestGroupRule.create();
+ *
+ *   &#064;Rule
+ *   public TestGroupMethodRule testGroupMethodRule = TestGroupMethodRule.create();
+ *
+ *   &#064;Test
+ *   &#064;TestGroup("slow")
+ *   public void slowTest() { ... }
+ * }
+ * </pre>
+ */
+public class TestGroupMethodRule implements TestRule {
+
+  private TestGroupMethodRule() {}
+
+  /**
+   * Creates an instance of {@link TestGroupMethodRule}.
+   */
+  public static TestGroupMethodRule create() {
+    return new TestGroupMethodRule();
+  }
+
+  @Override
+  public Statement apply(Statement base, Description description) {
+    SkipReason skipReason = TestGroupDecisions.checkTestMethod(description.getTestClass(), description.getAnnotation(TestGroup.class));
+
+    return skipReason != null ? new SkipStatement(skipReason) : base;
+  }
+}
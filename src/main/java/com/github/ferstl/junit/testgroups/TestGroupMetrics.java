@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Lock-free counters behind the {@link TestGroupMetricsMXBean}. Percentiles are approximated with histograms whose
+ * buckets are powers of two, so recording a value is a single atomic increment.
+ */
+final class TestGroupMetrics implements TestGroupMetricsMXBean {
+
+  static final String OBJECT_NAME = "com.github.ferstl.junit.testgroups:type=TestGroupMetrics";
+  static final String NO_GROUP = "<none>";
+
+  private final ConcurrentMap<String, GroupCounters> groups;
+  private final Histogram decisionLatencies;
+
+  TestGroupMetrics() {
+    this.groups = new ConcurrentHashMap<>();
+    this.decisionLatencies = new Histogram();
+  }
+
+  /**
+   * Creates the metrics and registers them with the platform MBean server. If metrics are already registered, e.g. by
+   * another class loader, the new metrics are still recorded but not exposed.
+   */
+  static TestGroupMetrics register() {
+    TestGroupMetrics metrics = new TestGroupMetrics();
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      server.registerMBean(metrics, new ObjectName(OBJECT_NAME));
+    } catch (InstanceAlreadyExistsException e) {
+      // Keep the already registered metrics.
+    } catch (JMException e) {
+      throw new IllegalStateException("Unable to register " + OBJECT_NAME, e);
+    }
+
+    return metrics;
+  }
+
+  void decision(Collection<String> declaredGroups, boolean skipped, long latencyNanos) {
+    this.decisionLatencies.record(latencyNanos);
+    for (String group : groupsOrDefault(declaredGroups)) {
+      GroupCounters counters = counters(group);
+      (skipped ? counters.skippedClasses : counters.runClasses).incrementAndGet();
+    }
+  }
+
+  void execution(Collection<String> declaredGroups, long durationNanos) {
+    for (String group : groupsOrDefault(declaredGroups)) {
+      GroupCounters counters = counters(group);
+      counters.totalDuration.addAndGet(durationNanos);
+      counters.durations.record(durationNanos);
+    }
+  }
+
+  @Override
+  public GroupStatistics[] getGroupStatistics() {
+    List<GroupStatistics> statistics = new ArrayList<>();
+    for (Map.Entry<String, GroupCounters> entry : new TreeMap<>(this.groups).entrySet()) {
+      GroupCounters counters = entry.getValue();
+      statistics.add(new GroupStatistics(entry.getKey(), counters.runClasses.get(), counters.skippedClasses.get(),
+          TimeUnit.NANOSECONDS.toMillis(counters.totalDuration.get()), TimeUnit.NANOSECONDS.toMillis(counters.durations.percentile(0.99))));
+    }
+
+    return statistics.toArray(new GroupStatistics[statistics.size()]);
+  }
+
+  @Override
+  public long getDecisionCount() {
+    return this.decisionLatencies.getCount();
+  }
+
+  @Override
+  public long getMeanDecisionLatencyNanos() {
+    return this.decisionLatencies.getMean();
+  }
+
+  @Override
+  public long getP99DecisionLatencyNanos() {
+    return this.decisionLatencies.percentile(0.99);
+  }
+
+  @Override
+  public void reset() {
+    this.groups.clear();
+    this.decisionLatencies.reset();
+  }
+
+  private GroupCounters counters(String group) {
+    GroupCounters counters = this.groups.get(group);
+    if (counters == null) {
+      counters = new GroupCounters();
+      GroupCounters existing = this.groups.putIfAbsent(group, counters);
+      counters = existing != null ? existing : counters;
+    }
+
+    return counters;
+  }
+
+  private static Collection<String> groupsOrDefault(Collection<String> declaredGroups) {
+    return declaredGroups.isEmpty() ? Collections.singleton(NO_GROUP) : declaredGroups;
+  }
+
+  private static final class GroupCounters {
+
+    final AtomicLong runClasses = new AtomicLong();
+    final AtomicLong skippedClasses = new AtomicLong();
+    final AtomicLong totalDuration = new AtomicLong();
+    final Histogram durations = new Histogram();
+  }
+
+  /**
+   * Histogram with 64 buckets. Bucket {@code i} counts the values {@code v} with {@code 2^(i-1) <= v < 2^i}.
+   * Percentiles are reported as the upper bound of their bucket, so they are at most twice the exact value.
+   */
+  static final class Histogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+
+    void record(long value) {
+      long positive = Math.max(0, value);
+      this.buckets.incrementAndGet(Math.min(63, 64 - Long.numberOfLeadingZeros(positive)));
+      this.count.incrementAndGet();
+      this.sum.addAndGet(positive);
+    }
+
+    long getCount() {
+      return this.count.get();
+    }
+
+    long getMean() {
+      long count = this.count.get();
+      return count > 0 ? this.sum.get() / count : 0;
+    }
+
+    long percentile(double percentile) {
+      long count = this.count.get();
+      long threshold = (long) Math.ceil(count * percentile);
+      long seen = 0;
+      for (int i = 0; i < 64; i++) {
+        seen += this.buckets.get(i);
+        if (seen >= threshold && seen > 0) {
+          return i == 0 ? 0 : (i == 63 ? Long.MAX_VALUE : (1L << i) - 1);
+        }
+      }
+
+      return 0;
+    }
+
+    void reset() {
+      for (int i = 0; i < 64; i++) {
+        this.buckets.set(i, 0);
+      }
+      this.count.set(0);
+      this.sum.set(0);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+/**
+ * Live metrics of the test group decisions and the test class executions. The MXBean is registered as
+ * {@value TestGroupMetrics#OBJECT_NAME} when the system property {@code testgroup.metrics} is {@code true}.
+ */
+public interface TestGroupMetricsMXBean {
+
+  /**
+   * Returns the statistics of each test group. Test classes without test group are counted in the group
+   * {@value TestGroupMetrics#NO_GROUP}.
+   */
+  GroupStatistics[] getGroupStatistics();
+
+  /**
+   * Returns the number of decisions whether a test class is run or skipped.
+   */
+  long getDecisionCount();
+
+  /**
+   * Returns the average time in nanoseconds to decide whether a test class is run or skipped.
+   */
+  long getMeanDecisionLatencyNanos();
+
+  /**
+   * Returns the 99th percentile of the time in nanoseconds to decide whether a test class is run or skipped.
+   */
+  long getP99DecisionLatencyNanos();
+
+  /**
+   * Resets all metrics.
+   */
+  void reset();
+}
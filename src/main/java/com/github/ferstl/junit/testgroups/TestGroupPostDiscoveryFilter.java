@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.junit.platform.engine.FilterResult;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.PostDiscoveryFilter;
+
+/**
+ * {@link PostDiscoveryFilter} for the JUnit Platform that removes all tests of disabled {@link TestGroup}s from the
+ * test plan. Test groups of test classes and of test methods are considered. The launcher prunes the then empty test
+ * classes, so they are never instantiated by their test engine. The filter works for all engines that describe their
+ * tests with a {@link ClassSource} or a {@link MethodSource}, e.g. the Jupiter and the Vintage engine. It is
+ * registered automatically via {@code META-INF/services}, so it applies to all test classes on the test class path,
+ * whether they use the {@link TestGroupRule} or the {@link TestGroupCondition} or not. {@code @Nested} test classes
+ * inherit the test group of their enclosing class.
+ * <p>
+ * Each test class is decided once per test plan. Since no test runs during discovery, only the test group, the
+ * {@link Shard} and the incremental state are checked. Time budgets and fail-fast are applied by the
+ * {@link TestGroupCondition} and the {@link TestGroupRule} when the test class runs.
+ * </p>
+ */
+public class TestGroupPostDiscoveryFilter implements PostDiscoveryFilter {
+
+  private volatile Discovery discovery;
+
+  @Override
+  public FilterResult apply(TestDescriptor descriptor) {
+    TestSource source = findSource(descriptor);
+    if (source == null) {
+      return FilterResult.included(null);
+    }
+
+    Class<?> testClass;
+    TestGroup methodGroup = null;
+    if (source instanceof MethodSource) {
+      testClass = ((MethodSource) source).getJavaClass();
+      methodGroup = findMethodGroup((MethodSource) source);
+    } else {
+      testClass = ((ClassSource) source).getJavaClass();
+    }
+
+    SkipReason skipReason = discovery(descriptor).check(testClass);
+    if (skipReason == null) {
+      skipReason = TestGroupDecisions.checkTestMethod(testClass, methodGroup);
+    }
+
+    return skipReason != null ? FilterResult.excluded(skipReason.getReason()) : FilterResult.included(null);
+  }
+
+  /**
+   * Returns the decisions of the test plan the given descriptor belongs to. A test plan is identified by its root.
+   */
+  private Discovery discovery(TestDescriptor descriptor) {
+    TestDescriptor root = descriptor;
+    while (root.getParent().isPresent()) {
+      root = root.getParent().get();
+    }
+
+    Discovery discovery = this.discovery;
+    if (discovery == null || discovery.root != root) {
+      discovery = new Discovery(root);
+      this.discovery = discovery;
+    }
+
+    return discovery;
+  }
+
+  /**
+   * The launcher only applies post discovery filters to tests and removes containers when they are empty. So the test
+   * class of a test is taken from its own source or from the source of its nearest ancestor.
+   */
+  private static TestSource findSource(TestDescriptor descriptor) {
+    TestDescriptor current = descriptor;
+    while (current != null) {
+      TestSource source = current.getSource().orElse(null);
+      if (source instanceof MethodSource || source instanceof ClassSource) {
+        return source;
+      }
+
+      current = current.getParent().orElse(null);
+    }
+
+    return null;
+  }
+
+  private static TestGroup findMethodGroup(MethodSource source) {
+    try {
+      return source.getJavaMethod().getAnnotation(TestGroup.class);
+    } catch (RuntimeException e) {
+      // Some engines use method names that do not exist, e.g. for parameterized tests in the Vintage engine.
+      return null;
+    }
+  }
+
+  /**
+   * Decisions per test class of one test plan.
+   */
+  private static final class Discovery {
+
+    /** {@link ConcurrentHashMap} does not support {@code null} values, so this instance marks selected test classes. */
+    private static final SkipReason SELECTED = new SkipReason();
+
+    final TestDescriptor root;
+    private final ConcurrentMap<Class<?>, SkipReason> decisions;
+
+    Discovery(TestDescriptor root) {
+      this.root = root;
+      this.decisions = new ConcurrentHashMap<>();
+    }
+
+    SkipReason check(Class<?> testClass) {
+      SkipReason skipReason = this.decisions.get(testClass);
+      if (skipReason == null) {
+        TestGroup testGroup = TestGroupDecisions.findTestGroup(testClass);
+        long start = TestGroupInstrumentation.start();
+        skipReason = TestGroupDecisions.checkSelection(testGroup, testClass);
+        if (skipReason != null) {
+          // Selected test classes are recorded when they run.
+          TestGroupInstrumentation.decision(testGroup, testClass, skipReason, start);
+        }
+        skipReason = skipReason != null ? skipReason : SELECTED;
+        this.decisions.put(testClass, skipReason);
+      }
+
+      return skipReason != SELECTED ? skipReason : null;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that generates the {@link TestGroupIndex} for all compiled classes. The test group of each class
+ * is resolved the same way {@link TestGroupRule} does: A {@link TestGroup} declared on the class itself or on one of its
+ * superclasses wins over a {@link TestGroup} declared in the {@code package-info.java} of the class' package or of its
+ * nearest parent package.
+ * <p>
+ * The processor is registered as a service and runs automatically when this library is on the compiler's class path.
+ * An incremental compilation only sees the recompiled classes, so their entries are merged into the existing index.
+ * </p>
+ */
+@SupportedAnnotationTypes("*")
+public class TestGroupProcessor extends AbstractProcessor {
+
+  private final TestGroupIndex index = new TestGroupIndex();
+  private final Set<String> compiledClasses = new HashSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      writeIndex();
+    } else {
+      for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+        addToIndex(type);
+      }
+    }
+
+    return false;
+  }
+
+  private void addToIndex(TypeElement type) {
+    String className = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+    this.compiledClasses.add(className);
+    TestGroup testGroup = findTestGroup(type);
+    if (testGroup != null) {
+      this.index.add(className, testGroup.key(), new LinkedHashSet<>(Arrays.asList(testGroup.value())));
+    }
+
+    for (TypeElement memberType : ElementFilter.typesIn(type.getEnclosedElements())) {
+      addToIndex(memberType);
+    }
+  }
+
+  private TestGroup findTestGroup(TypeElement type) {
+    for (TypeElement current = type; current != null; current = superclass(current)) {
+      TestGroup testGroup = current.getAnnotation(TestGroup.class);
+      if (testGroup != null) {
+        return testGroup;
+      }
+    }
+
+    Elements elements = this.processingEnv.getElementUtils();
+    String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+    while (!packageName.isEmpty()) {
+      PackageElement pkg = elements.getPackageElement(packageName);
+      TestGroup testGroup = pkg != null ? pkg.getAnnotation(TestGroup.class) : null;
+      if (testGroup != null) {
+        return testGroup;
+      }
+
+      int lastDot = packageName.lastIndexOf('.');
+      packageName = lastDot < 0 ? "" : packageName.substring(0, lastDot);
+    }
+
+    return null;
+  }
+
+  private static TypeElement superclass(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+
+    Element element = ((DeclaredType) superclass).asElement();
+    return element instanceof TypeElement ? (TypeElement) element : null;
+  }
+
+  private void writeIndex() {
+    boolean existing = mergeExistingIndex();
+    if (this.index.getClassNames().isEmpty() && !existing) {
+      return;
+    }
+
+    try {
+      FileObject resource = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", TestGroupIndex.LOCATION);
+      try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+        this.index.write(writer);
+      }
+    } catch (IOException e) {
+      this.processingEnv.getMessager().printMessage(Kind.ERROR, "Unable to write " + TestGroupIndex.LOCATION + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Adds the entries of the classes that were not compiled in this compilation from the existing index in the class
+   * output. Entries of compiled classes are replaced, so a class that lost its test group disappears from the index.
+   *
+   * @return {@code true} if there is an existing index.
+   */
+  private boolean mergeExistingIndex() {
+    TestGroupIndex existing = new TestGroupIndex();
+    try {
+      FileObject resource = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", TestGroupIndex.LOCATION);
+      try (Reader reader = new InputStreamReader(resource.openInputStream(), StandardCharsets.UTF_8)) {
+        existing.read(reader);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      // There is no index yet.
+      return false;
+    }
+
+    for (String className : existing.getClassNames()) {
+      if (!this.compiledClasses.contains(className)) {
+        this.index.add(className, existing.getKey(className), existing.getDeclaredGroups(className));
+      }
+    }
+
+    return true;
+  }
+}
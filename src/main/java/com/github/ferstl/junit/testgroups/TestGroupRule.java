@@ -21,11 +21,8 @@
  */
 package com.github.ferstl.junit.testgroups;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import org.junit.Assume;
+import org.junit.AssumptionViolatedException;
 import org.junit.rules.RuleChain;
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
@@ -33,7 +30,8 @@ import org.junit.runners.model.Statement;
 
 /**
  * JUnit rule that evaluates {@link TestGroup} annotations on tests and will skip all tests that do not belong to the
- * currently enabled group. This rule is supposed to be used as JUnit class rule!
+ * currently enabled group. This rule is supposed to be used as JUnit class rule! Enabled test classes share the
+ * {@link GroupFixture}s of their test groups.
  */
 public class TestGroupRule implements TestRule {
 
@@ -62,21 +60,18 @@ public class TestGroupRule implements TestRule {
 
   @Override
   public Statement apply(Statement base, Description description) {
+    Object token = TestGroupInstrumentation.beginRuleEvaluation();
     TestGroup testGroup = findTestGroup(description);
+    Class<?> testClass = description.getTestClass();
+    SkipReason skipReason = TestGroupDecisions.decide(testGroup, testClass);
+    TestGroupInstrumentation.endRuleEvaluation(token, testClass, skipReason != null);
 
-    if (testGroup == null) {
-      return base;
-    }
-
-    String key = testGroup.key();
-    Collection<String> enabledGroups = getEnabledTestGroups(key);
-    Collection<String> declaredGroups = getDeclaredTestGroups(testGroup);
-
-    if (isGroupEnabled(enabledGroups, declaredGroups)) {
-      return base;
+    if (skipReason != null) {
+      return new SkipStatement(skipReason);
     }
 
-    return new SkipStatement(enabledGroups, declaredGroups);
+    Statement statement = watchBudget(GroupBudgets.current(), testClass, GroupFixtures.wrap(testClass, base));
+    return measureExecution(testGroup, testClass, statement);
   }
 
 
@@ -85,82 +80,130 @@ public class TestGroupRule implements TestRule {
 
     // Try the package it the class is not annotated.
     if (testGroup == null) {
-      Package pkg = description.getTestClass().getPackage();
-      if (pkg != null) {
-        testGroup = pkg.getAnnotation(TestGroup.class);
-      }
+      testGroup = TestGroupCache.packageTestGroup(description.getTestClass());
     }
 
     return testGroup;
   }
 
 
-  static Collection<String> getEnabledTestGroups(String key) {
-    Collection<String> enabledGroups = split(System.getProperty(key));
+  /**
+   * Wraps the given statement so that the watchdog of the {@link GroupBudgets} knows about the running test class.
+   */
+  private static Statement watchBudget(final GroupBudgets budgets, final Class<?> testClass, final Statement base) {
+    if (!budgets.isActive()) {
+      return base;
+    }
 
-    return enabledGroups;
+    return new Statement() {
+
+      @Override
+      public void evaluate() throws Throwable {
+        GroupBudgets.RunningClass runningClass = budgets.start(testClass);
+        Throwable failure = null;
+        try {
+          base.evaluate();
+        } catch (Throwable e) {
+          failure = e;
+        } finally {
+          budgets.finish(runningClass);
+        }
+
+        // The interrupted test usually fails on its own, so the reason is reported on the test class.
+        if (runningClass.interrupted) {
+          throw new IllegalStateException(runningClass.interruptReason, failure);
+        }
+        if (failure != null) {
+          throw failure;
+        }
+      }
+    };
   }
 
-
-  static Collection<String> getDeclaredTestGroups(TestGroup testGroup) {
-    String[] declaredGroups = testGroup.value();
-    if (declaredGroups.length != 0) {
-      return new HashSet<>(Arrays.asList(declaredGroups));
+  /**
+   * Wraps the execution of an enabled test class in order to measure its duration. The given statement is returned as
+   * is if neither JMX metrics nor a Flight Recorder recording of the execution events are enabled.
+   */
+  private static Statement measureExecution(final TestGroup testGroup, final Class<?> testClass, final Statement base) {
+    if (!TestGroupInstrumentation.isExecutionMeasured()) {
+      return base;
     }
 
-    return Collections.emptyList();
+    return new Statement() {
+      @Override
+      public void evaluate() throws Throwable {
+        Object token = TestGroupInstrumentation.beginExecution();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+          base.evaluate();
+          failed = false;
+        } catch (AssumptionViolatedException e) {
+          failed = false;
+          throw e;
+        } finally {
+          TestGroupInstrumentation.endExecution(token, testGroup, testClass, start, failed);
+        }
+      }
+    };
   }
 
-
   /**
-   * A test group is enabled if:
-   * <ul>
-   * <li> {@link TestGroup#ALL_GROUPS} is defined</li>
-   * <li> The declared test groups contain at least one defined test group</li>
-   * <li> No test group is declared and no test group is defined.</li>
-   * </ul>
-   * @param enabledGroups Test groups that are enabled for execution.
-   * @param declaredGroups Test groups that are declared in the {@link TestGroup} annotation.
-   * @return
+   * Statement that skips a test class. The reason is only built when it is actually reported and evaluating the
+   * statement throws an {@link AssumptionViolatedException} without stack trace.
    */
-  static boolean isGroupEnabled(Collection<String> enabledGroups, Collection<String> declaredGroups) {
-    if (enabledGroups.contains(TestGroup.ALL_GROUPS) || (enabledGroups.isEmpty() && declaredGroups.isEmpty())) {
-      return true;
+  static class SkipStatement extends Statement {
+
+    private final SkipReason skipReason;
+
+    public SkipStatement(Collection<String> enabledGroups, Collection<String> testGroups) {
+      this(SkipReason.disabledGroups(enabledGroups, testGroups));
     }
 
-    for (String enabledGroup : enabledGroups) {
-      if (declaredGroups.contains(enabledGroup)) {
-        return true;
-      }
+    /**
+     * @param reasonParts The parts of the reason. They are concatenated when the reason is requested the first time.
+     */
+    SkipStatement(Object... reasonParts) {
+      this(new SkipReason(reasonParts));
     }
 
-    return false;
-  }
+    SkipStatement(SkipReason skipReason) {
+      this.skipReason = skipReason;
+    }
 
+    String getReason() {
+      return this.skipReason.getReason();
+    }
 
-  static Collection<String> split(String commaSeparated) {
-    if (commaSeparated == null || commaSeparated.trim().isEmpty()) {
-      return Collections.emptySet();
+    @Override
+    public void evaluate() throws Throwable {
+      throw new SkipException(this);
     }
+  }
 
-    String[] splits = commaSeparated.split(",+");
+  /**
+   * {@link AssumptionViolatedException} without stack trace. Skipping a test class is expected, so capturing the stack
+   * trace would be wasted effort.
+   */
+  static class SkipException extends AssumptionViolatedException {
 
-    return new HashSet<>(Arrays.asList(splits));
-  }
+    private static final long serialVersionUID = 1L;
 
-  static class SkipStatement extends Statement {
+    private final transient SkipStatement skipStatement;
 
-    Collection<String> enabledGroups;
-    Collection<String> testGroups;
+    SkipException(SkipStatement skipStatement) {
+      super((String) null);
+      this.skipStatement = skipStatement;
+    }
 
-    public SkipStatement(Collection<String> enabledGroups, Collection<String> testGroups) {
-      this.enabledGroups = enabledGroups;
-      this.testGroups = testGroups;
+    @Override
+    public String getMessage() {
+      return this.skipStatement.getReason();
     }
 
     @Override
-    public void evaluate() throws Throwable {
-      Assume.assumeTrue("None of the test groups " + this.testGroups + " are enabled. Enabled test groups: " + this.enabledGroups, false);
+    public synchronized Throwable fillInStackTrace() {
+      return this;
     }
   }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import org.junit.internal.builders.AllDefaultPossibilitiesBuilder;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.RunnerBuilder;
+
+/**
+ * {@link RunnerBuilder} that evaluates the {@link TestGroup} of a test class before its runner is built. Test classes
+ * whose test group is disabled are never passed to the underlying builder. So work done by the runner itself, like
+ * creating the parameters of a {@code Parameterized} test or the data points of a {@code Theories} test, is skipped
+ * as well. Test classes with an enabled test group are built by the delegate builder.
+ */
+public class TestGroupRunnerBuilder extends RunnerBuilder {
+
+  private final RunnerBuilder delegate;
+
+  /**
+   * Creates a builder that delegates to JUnit's default runner builder.
+   */
+  public TestGroupRunnerBuilder() {
+    this(new AllDefaultPossibilitiesBuilder(true));
+  }
+
+  /**
+   * Creates a builder that delegates to the given builder for all enabled test classes.
+   *
+   * @param delegate Builder for enabled test classes.
+   */
+  public TestGroupRunnerBuilder(RunnerBuilder delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Runner runnerForClass(Class<?> testClass) throws Throwable {
+    SkipReason skipReason = TestGroupDecisions.decideSkip(TestGroupDecisions.findTestGroup(testClass), testClass);
+    if (skipReason != null) {
+      return new SkippedClassRunner(testClass, skipReason);
+    }
+
+    return this.delegate.runnerForClass(testClass);
+  }
+
+  /**
+   * Reports the test class of the given runner as skipped if one of its test groups failed fast or exhausted its time
+   * budget after the runner was built. Suites call this method right before they run a child.
+   *
+   * @return {@code true} if the test class was skipped.
+   */
+  static boolean skipStopped(Runner runner, RunNotifier notifier) {
+    Class<?> testClass = runner.getDescription().getTestClass();
+    if (runner instanceof SkippedClassRunner || testClass == null) {
+      return false;
+    }
+
+    SkipReason skipReason = TestGroupDecisions.recheck(testClass);
+    if (skipReason == null) {
+      return false;
+    }
+
+    new SkippedClassRunner(testClass, skipReason).run(notifier);
+    return true;
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Scans class files for {@link TestGroup} annotations without loading the classes. This is an alternative to the
+ * {@link TestGroupProcessor} for projects that cannot use annotation processing. Test groups are resolved the same way
+ * {@link TestGroupRule} does: A {@link TestGroup} declared on the class itself or on one of its superclasses wins over
+ * a {@link TestGroup} declared on the package or on its nearest parent package.
+ * <p>
+ * Class path roots may be directories or JAR files. Superclasses and {@code package-info} classes that are not within
+ * the scanned roots are read as resources from the scanner's class loader. No class is ever loaded or initialized.
+ * </p>
+ */
+public class TestGroupScanner {
+
+  private static final String CLASS_SUFFIX = ".class";
+  private static final String PACKAGE_INFO = "package-info";
+  private static final String MODULE_INFO = "module-info";
+  private static final int ACC_PUBLIC = 0x0001;
+  /** {@code ACC_INTERFACE}, {@code ACC_ABSTRACT}, {@code ACC_SYNTHETIC}, {@code ACC_ANNOTATION} and {@code ACC_ENUM}. */
+  private static final int NOT_INSTANTIABLE = 0x0200 | 0x0400 | 0x1000 | 0x2000 | 0x4000;
+  private static final ClassFileInfo NOT_FOUND = new ClassFileInfo("", null, 0);
+  private static final String SUITE = "org/junit/runners/Suite";
+  private static final String TEST_GROUP_SUITE = "com/github/ferstl/junit/testgroups/TestGroupSuite";
+
+  private final ClassLoader classLoader;
+  private final Map<String, ClassFileInfo> classes;
+  private final List<String> scannedClasses;
+
+  /**
+   * Creates a scanner that reads classes outside the scanned roots from the given class loader.
+   *
+   * @param classLoader Class loader used to read superclasses and {@code package-info} classes outside of the scanned
+   *        roots. May be {@code null} in which case only the scanned roots are considered.
+   */
+  public TestGroupScanner(ClassLoader classLoader) {
+    this.classLoader = classLoader;
+    this.classes = new HashMap<>();
+    this.scannedClasses = new ArrayList<>();
+  }
+
+  /**
+   * Scans all entries of the {@code java.class.path} system property.
+   *
+   * @return The scanned test groups.
+   * @throws IOException If a class path entry cannot be read.
+   */
+  public static TestGroupIndex scanClassPath() throws IOException {
+    List<File> roots = new ArrayList<>();
+    for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+      if (!entry.isEmpty()) {
+        roots.add(new File(entry));
+      }
+    }
+
+    return new TestGroupScanner(null).scan(roots);
+  }
+
+  /**
+   * Scans the given class path roots.
+   *
+   * @param roots Directories or JAR files. Roots that don't exist are ignored.
+   * @return The test groups of all classes within the given roots.
+   * @throws IOException If a class file cannot be read.
+   */
+  public TestGroupIndex scan(File... roots) throws IOException {
+    return scan(Arrays.asList(roots));
+  }
+
+  /**
+   * Scans the given class path roots.
+   *
+   * @param roots Directories or JAR files. Roots that don't exist are ignored.
+   * @return The test groups of all classes within the given roots.
+   * @throws IOException If a class file cannot be read.
+   */
+  public TestGroupIndex scan(Collection<File> roots) throws IOException {
+    for (File root : roots) {
+      if (root.isDirectory()) {
+        scanDirectory(root.toPath());
+      } else if (root.isFile()) {
+        scanJar(root);
+      }
+    }
+
+    TestGroupIndex index = new TestGroupIndex();
+    for (String className : this.scannedClasses) {
+      ClassFileInfo testGroup = resolveTestGroup(className);
+      if (testGroup != null) {
+        index.add(className.replace('/', '.'), testGroup.getKey(), testGroup.getGroups());
+      }
+    }
+
+    return index;
+  }
+
+  /**
+   * Returns the binary names of all scanned classes that can be test classes, i.e. public, concrete, top level classes.
+   * Suites that run with the {@link org.junit.runners.Suite Suite} or a {@link TestGroupSuite} are excluded, since they
+   * would run their test classes a second time or even run each other endlessly. The access flags and the runners are
+   * read from the class files, so no class is loaded.
+   *
+   * @throws IOException If the class file of a superclass or a runner cannot be read.
+   */
+  List<String> getTestClassCandidates() throws IOException {
+    List<String> candidates = new ArrayList<>();
+    for (String className : this.scannedClasses) {
+      int accessFlags = this.classes.get(className).getAccessFlags();
+      if ((accessFlags & ACC_PUBLIC) != 0 && (accessFlags & NOT_INSTANTIABLE) == 0 && className.indexOf('$') < 0
+          && !isSuite(className)) {
+        candidates.add(className.replace('/', '.'));
+      }
+    }
+
+    return candidates;
+  }
+
+  private void scanDirectory(Path directory) throws IOException {
+    Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        if (file.getFileName().toString().endsWith(CLASS_SUFFIX)) {
+          add(ClassFileReader.read(readFile(file, attrs.size())));
+        }
+
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private void scanJar(File jar) throws IOException {
+    try (ZipFile zipFile = new ZipFile(jar)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        if (!entry.isDirectory() && entry.getName().endsWith(CLASS_SUFFIX) && !entry.getName().startsWith("META-INF/")) {
+          try (InputStream is = zipFile.getInputStream(entry)) {
+            add(ClassFileReader.read(readFully(is)));
+          }
+        }
+      }
+    }
+  }
+
+  private void add(ClassFileInfo info) {
+    if (!this.classes.containsKey(info.getName())) {
+      this.classes.put(info.getName(), info);
+      if (!info.getName().endsWith(PACKAGE_INFO) && !info.getName().equals(MODULE_INFO)) {
+        this.scannedClasses.add(info.getName());
+      }
+    }
+  }
+
+  private ClassFileInfo resolveTestGroup(String className) throws IOException {
+    ClassFileInfo info = findClass(className);
+    for (ClassFileInfo current = info; current != null; current = findClass(current.getSuperName())) {
+      if (current.hasTestGroup()) {
+        return current;
+      }
+    }
+
+    String packageName = info.getPackageName();
+    while (!packageName.isEmpty()) {
+      ClassFileInfo packageInfo = findClass(packageName + "/" + PACKAGE_INFO);
+      if (packageInfo != null && packageInfo.hasTestGroup()) {
+        return packageInfo;
+      }
+
+      int lastSlash = packageName.lastIndexOf('/');
+      packageName = lastSlash < 0 ? "" : packageName.substring(0, lastSlash);
+    }
+
+    return null;
+  }
+
+  private boolean isSuite(String className) throws IOException {
+    // @RunWith is inherited.
+    String runner = null;
+    for (ClassFileInfo current = findClass(className); current != null && runner == null; current = findClass(current.getSuperName())) {
+      runner = current.getRunner();
+    }
+
+    if (SUITE.equals(runner)) {
+      return true;
+    }
+
+    for (ClassFileInfo current = findClass(runner); current != null; current = findClass(current.getSuperName())) {
+      if (TEST_GROUP_SUITE.equals(current.getName())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private ClassFileInfo findClass(String className) throws IOException {
+    if (className == null || className.startsWith("java/")) {
+      return null;
+    }
+
+    ClassFileInfo info = this.classes.get(className);
+    if (info == null) {
+      info = readResource(className);
+      this.classes.put(className, info);
+    }
+
+    return info != NOT_FOUND ? info : null;
+  }
+
+  private ClassFileInfo readResource(String className) throws IOException {
+    InputStream is = this.classLoader != null ? this.classLoader.getResourceAsStream(className + CLASS_SUFFIX) : null;
+    if (is == null) {
+      return NOT_FOUND;
+    }
+
+    try {
+      return ClassFileReader.read(readFully(is));
+    } finally {
+      is.close();
+    }
+  }
+
+  private static byte[] readFile(Path file, long size) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // Read until the buffer is full.
+      }
+
+      return buffer.array();
+    }
+  }
+
+  private static byte[] readFully(InputStream is) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream(4096);
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = is.read(buffer)) >= 0) {
+      os.write(buffer, 0, read);
+    }
+
+    return os.toByteArray();
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Sorter;
+import com.github.ferstl.junit.testgroups.Timing.Kind;
+
+/**
+ * {@link Sorter} that orders test classes by their history as recorded by {@link TimingRecorder}. Test classes that
+ * will be skipped, because their test group is disabled or because they belong to another shard, are always sorted to
+ * the end. The remaining test classes are sorted by one of these modes:
+ * <ul>
+ * <li>{@link #longestFirst()}: Longest running test classes first, which reduces the total run time of parallel
+ * executions. Test classes without history come last.</li>
+ * <li>{@link #recentlyFailedFirst()}: Test classes that failed most recently first, which reports failures as early as
+ * possible. Test classes without a recorded failure come next, shortest first.</li>
+ * </ul>
+ * The order of tests within a test class is not changed. Descriptions without a test class are sorted after all test
+ * classes.
+ */
+public final class TestGroupSorter extends Sorter {
+
+  /** System property that selects the order of {@link TestGroupComputer}: {@code longest} or {@code failed}. */
+  static final String ORDER_PROPERTY = "testgroup.order";
+
+  private TestGroupSorter(Comparator<Description> comparator) {
+    super(comparator);
+  }
+
+  /**
+   * Creates a sorter that runs the longest running test classes first.
+   */
+  public static TestGroupSorter longestFirst() {
+    return new TestGroupSorter(new HistoryComparator(TimingStore.fromSystemProperties(), false));
+  }
+
+  /**
+   * Creates a sorter that runs the most recently failed test classes first.
+   */
+  public static TestGroupSorter recentlyFailedFirst() {
+    return new TestGroupSorter(new HistoryComparator(TimingStore.fromSystemProperties(), true));
+  }
+
+  /**
+   * Creates the sorter selected by the system property {@value #ORDER_PROPERTY}.
+   *
+   * @return The selected sorter or {@code null} if the system property is not set.
+   * @throws IllegalArgumentException If the system property has an unknown value.
+   */
+  static TestGroupSorter fromSystemProperty() {
+    String order = System.getProperty(ORDER_PROPERTY);
+    if (order == null || order.trim().isEmpty()) {
+      return null;
+    }
+
+    switch (order.trim()) {
+      case "longest":
+        return longestFirst();
+      case "failed":
+        return recentlyFailedFirst();
+      default:
+        throw new IllegalArgumentException("Unknown order '" + order + "' in system property " + ORDER_PROPERTY + ". Expected 'longest' or 'failed'.");
+    }
+  }
+
+  private static final class HistoryComparator implements Comparator<Description> {
+
+    private final TimingStore store;
+    private final boolean failedFirst;
+    private final ConcurrentMap<Class<?>, Boolean> skipped;
+    private volatile Map<String, Timing> history;
+
+    HistoryComparator(TimingStore store, boolean failedFirst) {
+      this.store = store;
+      this.failedFirst = failedFirst;
+      this.skipped = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public int compare(Description d1, Description d2) {
+      Class<?> c1 = d1.getTestClass();
+      Class<?> c2 = d2.getTestClass();
+      // Tests of the same class keep their order.
+      if (c1 == c2) {
+        return 0;
+      } else if (c1 == null || c2 == null) {
+        return c1 == null ? 1 : -1;
+      }
+
+      int result = Boolean.compare(isSkipped(c1), isSkipped(c2));
+      if (result != 0) {
+        return result;
+      }
+
+      Timing t1 = history().get(c1.getName());
+      Timing t2 = history().get(c2.getName());
+      if (this.failedFirst) {
+        result = Long.compare(lastFailure(t2), lastFailure(t1));
+        return result != 0 ? result : Long.compare(wallTime(t1, Long.MAX_VALUE), wallTime(t2, Long.MAX_VALUE));
+      }
+
+      return Long.compare(wallTime(t2, -1), wallTime(t1, -1));
+    }
+
+    /**
+     * Checks each test class only once, not on every comparison.
+     */
+    private boolean isSkipped(Class<?> testClass) {
+      Boolean skipped = this.skipped.get(testClass);
+      if (skipped == null) {
+        skipped = TestGroupDecisions.checkTestClass(TestGroupDecisions.findTestGroup(testClass), testClass) != null;
+        this.skipped.putIfAbsent(testClass, skipped);
+      }
+
+      return skipped;
+    }
+
+    private static long lastFailure(Timing timing) {
+      return timing != null ? timing.getLastFailure() : 0;
+    }
+
+    private static long wallTime(Timing timing, long unknown) {
+      return timing != null ? timing.getWallTime() : unknown;
+    }
+
+    private Map<String, Timing> history() {
+      Map<String, Timing> history = this.history;
+      if (history == null) {
+        try {
+          history = this.store.load(Kind.CLASS);
+        } catch (IOException e) {
+          // Without history, only skipped test classes are sorted.
+          history = Collections.emptyMap();
+        }
+        this.history = history;
+      }
+
+      return history;
+    }
+  }
+}
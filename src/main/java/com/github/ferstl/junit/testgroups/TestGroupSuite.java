@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.Statement;
+
+/**
+ * Suite that discovers its test classes with the {@link TestGroupScanner} and only runs the enabled ones:
+ * <pre>
+ * &#64;RunWith(TestGroupSuite.class)
+ * &#64;TestGroupSuite.Scan(packages = "my.project")
+ * public class AllTests {}
+ * </pre>
+ * Test classes are discovered from their class files, so disabled test classes are never loaded. The runner of an
+ * enabled test class is only built right before the test class runs and is released afterwards. Test classes that are
+ * skipped for another reason, e.g. by a {@link GroupBudgets time budget}, are reported as ignored. Since the suite does
+ * not know the test classes in advance, {@link GroupFixture}s live until the end of the test run. With
+ * {@code -Dtestgroup.preload=n}, the next {@code n} test classes are loaded and initialized in the background (see
+ * {@link ClassPreloader}).
+ */
+public class TestGroupSuite extends ParentRunner<String> {
+
+  /**
+   * Defines where the {@link TestGroupSuite} looks for test classes.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.TYPE)
+  @Inherited
+  public @interface Scan {
+
+    /**
+     * Packages (including their sub-packages) that contain the test classes. Default: The package of the suite.
+     */
+    String[] packages() default {};
+
+    /**
+     * Class path roots (directories or JAR files) that contain the test classes. Default: The class path root of the
+     * suite.
+     */
+    String[] roots() default {};
+
+    /**
+     * Regular expression for the simple names of the test classes. The default matches the names that Maven Surefire
+     * includes by default.
+     */
+    String includes() default "Test.*|.*Tests?|.*TestCase";
+  }
+
+  private final RunnerBuilder builder;
+  private final List<String> testClasses;
+  private final List<Filter> filters;
+  private volatile ClassPreloader preloader;
+
+  /**
+   * Called reflectively by JUnit.
+   */
+  public TestGroupSuite(Class<?> suiteClass, RunnerBuilder builder) throws InitializationError {
+    super(suiteClass);
+    this.builder = builder;
+    this.testClasses = discover(suiteClass);
+    this.filters = new ArrayList<>();
+  }
+
+  @Override
+  protected List<String> getChildren() {
+    return this.testClasses;
+  }
+
+  /**
+   * Describes a test class without its tests, which would require to build its runner.
+   */
+  @Override
+  protected Description describeChild(String child) {
+    return Description.createSuiteDescription(child);
+  }
+
+  @Override
+  protected void runChild(String child, RunNotifier notifier) {
+    Runner runner;
+    try {
+      ClassPreloader preloader = this.preloader;
+      Class<?> testClass = preloader != null ? preloader.load(child) : Class.forName(child, false, getTestClass().getJavaClass().getClassLoader());
+      SkipReason skipReason = TestGroupDecisions.decideSkip(TestGroupDecisions.findTestGroup(testClass), testClass);
+      runner = skipReason != null ? new SkippedClassRunner(testClass, skipReason) : this.builder.safeRunnerForClass(testClass);
+    } catch (ClassNotFoundException | LinkageError e) {
+      notifier.fireTestFailure(new Failure(describeChild(child), e));
+      return;
+    }
+
+    try {
+      for (Filter filter : this.filters) {
+        filter.apply(runner);
+      }
+    } catch (NoTestsRemainException e) {
+      return;
+    }
+
+    runner.run(notifier);
+  }
+
+  @Override
+  protected Statement classBlock(RunNotifier notifier) {
+    final Statement statement = super.classBlock(notifier);
+    return new Statement() {
+
+      @Override
+      public void evaluate() throws Throwable {
+        ClassLoader classLoader = getTestClass().getJavaClass().getClassLoader();
+        TestGroupSuite.this.preloader = ClassPreloader.fromSystemProperty(PreloadingSuite.childClassNames(getDescription()), classLoader);
+        try {
+          statement.evaluate();
+        } finally {
+          if (TestGroupSuite.this.preloader != null) {
+            TestGroupSuite.this.preloader.close();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Filters are applied to the runners of the test classes when they are built, because the descriptions of the test
+   * classes do not contain their tests.
+   */
+  @Override
+  public void filter(Filter filter) throws NoTestsRemainException {
+    this.filters.add(filter);
+  }
+
+  private static List<String> discover(Class<?> suiteClass) throws InitializationError {
+    Scan scan = suiteClass.getAnnotation(Scan.class);
+    String[] packages = scan != null && scan.packages().length > 0
+        ? scan.packages() : new String[] {suiteClass.getPackage() != null ? suiteClass.getPackage().getName() : ""};
+    Pattern includes = Pattern.compile(scan != null ? scan.includes() : "Test.*|.*Tests?|.*TestCase");
+
+    List<File> roots = new ArrayList<>();
+    if (scan != null && scan.roots().length > 0) {
+      for (String root : scan.roots()) {
+        roots.add(new File(root));
+      }
+    } else {
+      roots.add(classPathRoot(suiteClass));
+    }
+
+    TestGroupScanner scanner = new TestGroupScanner(suiteClass.getClassLoader());
+    TestGroupIndex index;
+    List<String> candidates;
+    try {
+      index = scanner.scan(packageRoots(roots, packages));
+      candidates = scanner.getTestClassCandidates();
+    } catch (IOException e) {
+      throw new InitializationError(e);
+    }
+
+    List<String> testClasses = new ArrayList<>();
+    for (String className : candidates) {
+      String simpleName = className.substring(className.lastIndexOf('.') + 1);
+      if (!className.equals(suiteClass.getName()) && isInPackage(className, packages) && includes.matcher(simpleName).matches()
+          && index.isEnabled(className)) {
+        testClasses.add(className);
+      }
+    }
+    Collections.sort(testClasses);
+
+    return testClasses;
+  }
+
+  /**
+   * Restricts directory roots to the directories of the given packages. JAR files are scanned completely.
+   */
+  private static List<File> packageRoots(List<File> roots, String[] packages) {
+    List<File> packageRoots = new ArrayList<>();
+    for (File root : roots) {
+      if (root.isDirectory()) {
+        for (String packageName : packages) {
+          packageRoots.add(packageName.isEmpty() ? root : new File(root, packageName.replace('.', File.separatorChar)));
+        }
+      } else {
+        packageRoots.add(root);
+      }
+    }
+
+    return packageRoots;
+  }
+
+  private static boolean isInPackage(String className, String[] packages) {
+    for (String packageName : packages) {
+      if (packageName.isEmpty() || className.startsWith(packageName + ".")) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static File classPathRoot(Class<?> suiteClass) throws InitializationError {
+    CodeSource codeSource = suiteClass.getProtectionDomain().getCodeSource();
+    if (codeSource == null || codeSource.getLocation() == null) {
+      throw new InitializationError("Unable to determine the class path root of " + suiteClass.getName()
+          + ". Use @" + Scan.class.getName() + "(roots = ...)");
+    }
+
+    try {
+      return new File(codeSource.getLocation().toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      throw new InitializationError(e);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Main class of the worker JVMs of a {@link TestGroupWorkerPool}. A worker runs one test class after the other in the
+ * same JVM, so loaded classes, JIT compiled code and {@link GroupFixture}s are reused. The standard output is reserved
+ * for the {@link WorkerProtocol}, output of the tests is redirected to the standard error. At the start of each run, the
+ * worker takes over the settings of the pool and forgets the state of the previous run, e.g. failed test groups.
+ */
+final class TestGroupWorker {
+
+  private TestGroupWorker() {
+    throw new AssertionError("not instantiable");
+  }
+
+  public static void main(String[] args) throws IOException {
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+    System.setOut(System.err);
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+
+    JUnitCore core = new JUnitCore();
+    core.addListener(new EventWriter(out));
+    Map<String, String> settings = Collections.emptyMap();
+    byte command;
+    while ((command = readCommand(in)) != WorkerProtocol.STOP) {
+      if (command == WorkerProtocol.START_RUN) {
+        Map<String, String> previous = settings;
+        settings = WorkerProtocol.readSettings(in);
+        startRun(previous, settings);
+        continue;
+      }
+
+      String className = in.readUTF();
+      try {
+        core.run(Request.aClass(Class.forName(className)));
+      } catch (ClassNotFoundException | LinkageError e) {
+        WorkerProtocol.writeFailure(out, WorkerProtocol.FAILURE, new Failure(Description.createSuiteDescription(className), e));
+      }
+      out.writeByte(WorkerProtocol.DONE);
+      out.writeUTF(className);
+      out.flush();
+    }
+  }
+
+  private static byte readCommand(DataInputStream in) throws IOException {
+    try {
+      byte command = in.readByte();
+      if (command != WorkerProtocol.START_RUN && command != WorkerProtocol.RUN_CLASS && command != WorkerProtocol.STOP) {
+        throw new IOException("Unknown command " + command);
+      }
+
+      return command;
+    } catch (EOFException e) {
+      // The pool has terminated.
+      return WorkerProtocol.STOP;
+    }
+  }
+
+  /**
+   * Applies the settings of a new run and resets the state of the previous run. Group fixtures are kept.
+   */
+  private static void startRun(Map<String, String> previous, Map<String, String> settings) {
+    WorkerProtocol.applySettings(previous, settings);
+    GroupFailFast.reset();
+    GroupBudgets.reset();
+    IncrementalState.reset();
+  }
+
+  /**
+   * Writes the events of a test run to the pool. JUnit calls the listener from the thread that runs the test, which
+   * is not necessarily the main thread.
+   */
+  private static final class EventWriter extends RunListener {
+
+    private final DataOutputStream out;
+
+    EventWriter(DataOutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void testStarted(Description description) {
+      write(WorkerProtocol.STARTED, description, null);
+    }
+
+    @Override
+    public void testFinished(Description description) {
+      write(WorkerProtocol.FINISHED, description, null);
+    }
+
+    @Override
+    public void testFailure(Failure failure) {
+      write(WorkerProtocol.FAILURE, null, failure);
+    }
+
+    @Override
+    public void testAssumptionFailure(Failure failure) {
+      write(WorkerProtocol.ASSUMPTION_FAILURE, null, failure);
+    }
+
+    @Override
+    public void testIgnored(Description description) {
+      write(WorkerProtocol.IGNORED, description, null);
+    }
+
+    private void write(byte type, Description description, Failure failure) {
+      try {
+        synchronized (this.out) {
+          if (failure != null) {
+            WorkerProtocol.writeFailure(this.out, type, failure);
+          } else {
+            WorkerProtocol.writeEvent(this.out, type, description);
+          }
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to write to the worker pool", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+
+/**
+ * Pool of long-lived worker JVMs that run test classes. The workers keep their loaded classes, JIT compiled code and
+ * {@link GroupFixture}s between test classes and between runs, so only the first run pays for the JVM startup:
+ * <pre>
+ * try (TestGroupWorkerPool pool = TestGroupWorkerPool.start(4)) {
+ *   Result result = pool.run(MyTest.class, MyOtherTest.class);
+ * }
+ * </pre>
+ * Test classes with a disabled test group are reported as ignored without sending them to a worker. Each test group is
+ * assigned to one worker, so its test classes share the group's fixtures. A test class with several test groups runs
+ * on the worker of its first test group that was already assigned. Test classes without test group run on any idle
+ * worker. The events of all workers are reported to the listeners of the pool as if the test classes ran in
+ * this JVM.
+ * <p>
+ * The workers use the class path of this JVM, the JVM arguments of the system property {@value #JVM_ARGS_PROPERTY}
+ * (separated by spaces) and all {@code testgroup*} system properties of this JVM. At the start of each run, these
+ * system properties and the system properties with the keys of the dispatched test classes' {@link TestGroup}
+ * annotations are sent to the workers, so the pool and its workers select the same test classes. A worker that
+ * terminates unexpectedly fails its current test class and is replaced by a new worker. If it cannot be replaced, its
+ * remaining test classes run on the other workers. Test classes that are left when no worker is available fail.
+ * </p>
+ * <p>
+ * {@link GroupFailFast Fail-fast} and {@link GroupBudgets time budgets} are applied by each worker on its own: A test
+ * group that failed or exhausted its budget on one worker is not skipped on the other workers, and the pool keeps
+ * dispatching its test classes. Since each test group is assigned to one worker, this only affects test classes with
+ * several test groups.
+ * </p>
+ */
+public final class TestGroupWorkerPool implements Closeable {
+
+  /** System property with additional JVM arguments for the workers. */
+  public static final String JVM_ARGS_PROPERTY = "testgroup.workers.jvmArgs";
+
+  private final List<Worker> workers;
+  private final List<RunListener> listeners;
+  private final ExecutorService executor;
+
+  private TestGroupWorkerPool(int size) throws IOException {
+    this.workers = new ArrayList<>(size);
+    this.listeners = new ArrayList<>();
+    this.executor = Executors.newFixedThreadPool(size);
+    try {
+      for (int i = 0; i < size; i++) {
+        this.workers.add(new Worker());
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Starts a pool with the given number of worker JVMs.
+   *
+   * @param size Number of workers.
+   * @return The started pool.
+   * @throws IOException If a worker cannot be started.
+   */
+  public static TestGroupWorkerPool start(int size) throws IOException {
+    if (size < 1) {
+      throw new IllegalArgumentException("A worker pool needs at least one worker: " + size);
+    }
+
+    return new TestGroupWorkerPool(size);
+  }
+
+  /**
+   * Adds a listener that is notified about the events of all test runs.
+   */
+  public synchronized void addListener(RunListener listener) {
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Runs the given test classes on the workers and waits until all of them have finished.
+   *
+   * @param classes Test classes to run.
+   * @return The result of the run.
+   */
+  public synchronized Result run(Class<?>... classes) {
+    Result result = new Result();
+    final RunNotifier notifier = new RunNotifier();
+    notifier.addListener(result.createListener());
+    for (RunListener listener : this.listeners) {
+      notifier.addListener(listener);
+    }
+
+    Description suite = Description.createSuiteDescription(TestGroupWorkerPool.class.getName());
+    List<Queue<String>> affine = new ArrayList<>(this.workers.size());
+    int[] assigned = new int[this.workers.size()];
+    for (int i = 0; i < this.workers.size(); i++) {
+      affine.add(new ConcurrentLinkedQueue<String>());
+    }
+    Queue<String> shared = new ConcurrentLinkedQueue<>();
+    Map<String, Integer> groupWorkers = new HashMap<>();
+    List<Runnable> skipped = new ArrayList<>();
+    Set<String> keys = new HashSet<>();
+
+    for (final Class<?> testClass : classes) {
+      TestGroup testGroup = TestGroupDecisions.findTestGroup(testClass);
+      final SkipReason skipReason = TestGroupDecisions.decideSkip(testGroup, testClass);
+      suite.addChild(Description.createSuiteDescription(testClass.getName()));
+      if (skipReason != null) {
+        skipped.add(new Runnable() {
+          @Override
+          public void run() {
+            notifier.fireTestIgnored(new SkippedClassRunner(testClass, skipReason).getDescription());
+          }
+        });
+        continue;
+      }
+
+      addTestGroupKeys(testClass, testGroup, keys);
+      Collection<String> groups = TestGroupCache.declaredGroups(testClass);
+      if (groups.isEmpty()) {
+        shared.add(testClass.getName());
+      } else {
+        int worker = assignWorker(groups, groupWorkers, assigned);
+        assigned[worker]++;
+        affine.get(worker).add(testClass.getName());
+      }
+    }
+
+    notifier.fireTestRunStarted(suite);
+    for (Runnable skip : skipped) {
+      skip.run();
+    }
+
+    Map<String, String> settings = WorkerProtocol.currentSettings(keys);
+    AtomicReference<IOException> startFailure = new AtomicReference<>();
+    boolean dispatched = dispatch(affine, shared, settings, startFailure, notifier, suite);
+    // Workers that cannot be replaced hand their test classes over to the shared queue, possibly after all other
+    // workers have finished.
+    while (dispatched && !shared.isEmpty() && hasWorkers()) {
+      dispatched = dispatch(affine, shared, settings, startFailure, notifier, suite);
+    }
+
+    // Test classes are only left if no worker could be started.
+    for (Queue<String> queue : affine) {
+      shared.addAll(queue);
+    }
+    for (String className : shared) {
+      notifier.fireTestFailure(new Failure(Description.createSuiteDescription(className),
+          new IllegalStateException("No worker available to run " + className, startFailure.get())));
+    }
+    notifier.fireTestRunFinished(result);
+
+    return result;
+  }
+
+  /**
+   * Adds the keys of the test groups of the given test class and of its test methods, which the workers need to
+   * decide the same way as this JVM.
+   */
+  private static void addTestGroupKeys(Class<?> testClass, TestGroup testGroup, Set<String> keys) {
+    if (testGroup != null) {
+      keys.add(testGroup.key());
+    }
+    for (Method method : testClass.getMethods()) {
+      TestGroup methodGroup = method.getAnnotation(TestGroup.class);
+      if (methodGroup != null) {
+        keys.add(methodGroup.key());
+      }
+    }
+  }
+
+  /**
+   * Runs the given test classes on all workers and waits until they have finished.
+   *
+   * @return {@code false} if the run was interrupted.
+   */
+  private boolean dispatch(List<Queue<String>> affine, Queue<String> shared, Map<String, String> settings,
+      AtomicReference<IOException> startFailure, RunNotifier notifier, Description suite) {
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < this.workers.size(); i++) {
+      futures.add(this.executor.submit(new Dispatcher(i, affine.get(i), shared, settings, startFailure, notifier)));
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        notifier.fireTestFailure(new Failure(suite, e));
+        return false;
+      } catch (ExecutionException e) {
+        notifier.fireTestFailure(new Failure(suite, e.getCause()));
+      }
+    }
+
+    return true;
+  }
+
+  private boolean hasWorkers() {
+    for (Worker worker : this.workers) {
+      if (worker != null) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Stops all workers.
+   */
+  @Override
+  public synchronized void close() {
+    this.executor.shutdownNow();
+    for (Worker worker : this.workers) {
+      if (worker != null) {
+        worker.stop();
+      }
+    }
+  }
+
+  /**
+   * Returns the worker of the first test group that already has a worker. Otherwise, the test groups are assigned to
+   * the worker with the least test classes.
+   */
+  private static int assignWorker(Collection<String> groups, Map<String, Integer> groupWorkers, int[] assigned) {
+    for (String group : new TreeSet<>(groups)) {
+      Integer worker = groupWorkers.get(group);
+      if (worker != null) {
+        return worker;
+      }
+    }
+
+    int worker = leastAssigned(assigned);
+    for (String group : groups) {
+      groupWorkers.put(group, worker);
+    }
+
+    return worker;
+  }
+
+  private static int leastAssigned(int[] assigned) {
+    int least = 0;
+    for (int i = 1; i < assigned.length; i++) {
+      if (assigned[i] < assigned[least]) {
+        least = i;
+      }
+    }
+
+    return least;
+  }
+
+  /**
+   * Sends the settings of the run and then the test classes of its own queue and of the shared queue to its worker. If
+   * the worker cannot be (re)started, the test classes of its own queue are handed over to the other workers.
+   */
+  private final class Dispatcher implements Runnable {
+
+    private final int index;
+    private final Queue<String> affine;
+    private final Queue<String> shared;
+    private final Map<String, String> settings;
+    private final AtomicReference<IOException> startFailure;
+    private final RunNotifier notifier;
+
+    Dispatcher(int index, Queue<String> affine, Queue<String> shared, Map<String, String> settings,
+        AtomicReference<IOException> startFailure, RunNotifier notifier) {
+      this.index = index;
+      this.affine = affine;
+      this.shared = shared;
+      this.settings = settings;
+      this.startFailure = startFailure;
+      this.notifier = notifier;
+    }
+
+    @Override
+    public void run() {
+      Worker worker = startRun();
+      String className;
+      while (worker != null && (className = next()) != null) {
+        try {
+          worker.run(className, this.notifier);
+        } catch (IOException e) {
+          this.notifier.fireTestFailure(new Failure(Description.createSuiteDescription(className),
+              new IllegalStateException("Worker terminated while running " + className, e)));
+          worker.stop();
+          TestGroupWorkerPool.this.workers.set(this.index, null);
+          worker = startRun();
+        }
+      }
+
+      if (worker == null) {
+        while ((className = this.affine.poll()) != null) {
+          this.shared.add(className);
+        }
+      }
+    }
+
+    /**
+     * Starts a new worker if necessary and sends the settings of the run unless the worker already has them.
+     *
+     * @return The worker or {@code null} if it cannot be started.
+     */
+    private Worker startRun() {
+      Worker worker = TestGroupWorkerPool.this.workers.get(this.index);
+      try {
+        if (worker == null) {
+          worker = new Worker();
+          TestGroupWorkerPool.this.workers.set(this.index, worker);
+        }
+        if (worker.settings != this.settings) {
+          worker.startRun(this.settings);
+        }
+
+        return worker;
+      } catch (IOException e) {
+        if (worker != null) {
+          worker.stop();
+        }
+        TestGroupWorkerPool.this.workers.set(this.index, null);
+        this.startFailure.set(e);
+
+        return null;
+      }
+    }
+
+    private String next() {
+      String className = this.affine.poll();
+      return className != null ? className : this.shared.poll();
+    }
+  }
+
+  private static final class Worker {
+
+    private final Process process;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    /** The settings of the current run. */
+    Map<String, String> settings;
+
+    Worker() throws IOException {
+      List<String> command = new ArrayList<>();
+      command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+      for (String jvmArg : System.getProperty(JVM_ARGS_PROPERTY, "").split(" ")) {
+        if (!jvmArg.isEmpty()) {
+          command.add(jvmArg);
+        }
+      }
+      for (Entry<String, String> setting : WorkerProtocol.currentSettings().entrySet()) {
+        command.add("-D" + setting.getKey() + "=" + setting.getValue());
+      }
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(TestGroupWorker.class.getName());
+
+      this.process = new ProcessBuilder(command).redirectError(Redirect.INHERIT).start();
+      this.out = new DataOutputStream(new BufferedOutputStream(this.process.getOutputStream()));
+      this.in = new DataInputStream(new BufferedInputStream(this.process.getInputStream()));
+    }
+
+    void startRun(Map<String, String> settings) throws IOException {
+      this.out.writeByte(WorkerProtocol.START_RUN);
+      WorkerProtocol.writeSettings(this.out, settings);
+      this.out.flush();
+      this.settings = settings;
+    }
+
+    void run(String className, RunNotifier notifier) throws IOException {
+      this.out.writeByte(WorkerProtocol.RUN_CLASS);
+      this.out.writeUTF(className);
+      this.out.flush();
+      while (WorkerProtocol.readEvent(this.in, notifier) != WorkerProtocol.DONE) {
+        // Forward all events of the test class.
+      }
+    }
+
+    void stop() {
+      try {
+        this.out.writeByte(WorkerProtocol.STOP);
+        this.out.close();
+      } catch (IOException e) {
+        // The worker has already terminated.
+      }
+      this.process.destroy();
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+/**
+ * Recorded timing of a test class or a test group. Durations are in nanoseconds.
+ */
+final class Timing {
+
+  /** Kind of a timing record. */
+  enum Kind {
+    CLASS, GROUP
+  }
+
+  private final Kind kind;
+  private final String name;
+  private final long timestamp;
+  private final long wallTime;
+  private final long cpuTime;
+  private final long allocatedBytes;
+  private final boolean failed;
+  private final long lastFailure;
+
+  Timing(Kind kind, String name, long timestamp, long wallTime, long cpuTime, long allocatedBytes, boolean failed) {
+    this(kind, name, timestamp, wallTime, cpuTime, allocatedBytes, failed, failed ? timestamp : 0);
+  }
+
+  private Timing(Kind kind, String name, long timestamp, long wallTime, long cpuTime, long allocatedBytes, boolean failed, long lastFailure) {
+    this.kind = kind;
+    this.name = name;
+    this.timestamp = timestamp;
+    this.wallTime = wallTime;
+    this.cpuTime = cpuTime;
+    this.allocatedBytes = allocatedBytes;
+    this.failed = failed;
+    this.lastFailure = lastFailure;
+  }
+
+  Kind getKind() {
+    return this.kind;
+  }
+
+  String getName() {
+    return this.name;
+  }
+
+  /** Time of the recording in milliseconds since the epoch. */
+  long getTimestamp() {
+    return this.timestamp;
+  }
+
+  long getWallTime() {
+    return this.wallTime;
+  }
+
+  long getCpuTime() {
+    return this.cpuTime;
+  }
+
+  long getAllocatedBytes() {
+    return this.allocatedBytes;
+  }
+
+  /** Whether the most recent run failed. */
+  boolean isFailed() {
+    return this.failed;
+  }
+
+  /** Time of the most recent failure in milliseconds since the epoch or {@code 0} if there was no failure. */
+  long getLastFailure() {
+    return this.lastFailure;
+  }
+
+  /**
+   * Merges a newer timing into this one. The durations are exponentially decayed with the given weight of the newer
+   * timing.
+   *
+   * @param newer The newer timing of the same test class or group.
+   * @param weight Weight of the newer timing between 0 and 1.
+   * @return The merged timing.
+   */
+  Timing merge(Timing newer, double weight) {
+    return new Timing(this.kind, this.name, newer.timestamp,
+        decay(this.wallTime, newer.wallTime, weight),
+        decay(this.cpuTime, newer.cpuTime, weight),
+        decay(this.allocatedBytes, newer.allocatedBytes, weight),
+        newer.failed,
+        Math.max(this.lastFailure, newer.lastFailure));
+  }
+
+  /**
+   * Returns this timing with the given last failure. Used when reading compacted records.
+   */
+  Timing withLastFailure(long lastFailure) {
+    return new Timing(this.kind, this.name, this.timestamp, this.wallTime, this.cpuTime, this.allocatedBytes, this.failed, lastFailure);
+  }
+
+  private static long decay(long older, long newer, double weight) {
+    return Math.round(older * (1 - weight) + newer * weight);
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import com.github.ferstl.junit.testgroups.Timing.Kind;
+
+/**
+ * {@link RunListener} that records the wall time, the CPU time and the allocated bytes of each test class and each
+ * {@link TestGroup}. The timings of a test class are the sum of the timings of its tests, so {@code @BeforeClass} and
+ * {@code @AfterClass} methods are not included. The timing of a test group is the sum of the timings of its test
+ * classes.
+ * <p>
+ * Measurements are accumulated in memory per test class. When the test run has finished, they are appended to the
+ * history file defined by the system property {@code testgroup.history} (default:
+ * {@value TimingStore#DEFAULT_LOCATION}). Maven Surefire can register the recorder as listener:
+ * </p>
+ * <pre>
+ * &lt;properties&gt;
+ *   &lt;property&gt;
+ *     &lt;name&gt;listener&lt;/name&gt;
+ *     &lt;value&gt;com.github.ferstl.junit.testgroups.TimingRecorder&lt;/value&gt;
+ *   &lt;/property&gt;
+ * &lt;/properties&gt;
+ * </pre>
+ */
+@RunListener.ThreadSafe
+public class TimingRecorder extends RunListener {
+
+  private final TimingStore store;
+  private final ConcurrentMap<Class<?>, ClassTiming> classTimings;
+  private final ThreadLocal<long[]> testStart;
+  private final ThreadMXBean threadMXBean;
+  private final boolean cpuTimeSupported;
+  private final com.sun.management.ThreadMXBean allocationMXBean;
+
+  /**
+   * Creates a recorder that writes to the history file defined by the system property {@code testgroup.history}.
+   */
+  public TimingRecorder() {
+    this(TimingStore.fromSystemProperties());
+  }
+
+  TimingRecorder(TimingStore store) {
+    this.store = store;
+    this.classTimings = new ConcurrentHashMap<>();
+    this.testStart = new ThreadLocal<long[]>() {
+
+      @Override
+      protected long[] initialValue() {
+        return new long[3];
+      }
+    };
+    this.threadMXBean = ManagementFactory.getThreadMXBean();
+    this.cpuTimeSupported = this.threadMXBean.isCurrentThreadCpuTimeSupported();
+    this.allocationMXBean = allocationMXBean(this.threadMXBean);
+  }
+
+  @Override
+  public void testStarted(Description description) {
+    long[] start = this.testStart.get();
+    start[0] = System.nanoTime();
+    start[1] = cpuTime();
+    start[2] = allocatedBytes();
+  }
+
+  @Override
+  public void testFinished(Description description) {
+    long[] start = this.testStart.get();
+    long wallTime = System.nanoTime() - start[0];
+    long cpuTime = cpuTime() - start[1];
+    long allocatedBytes = allocatedBytes() - start[2];
+
+    ClassTiming classTiming = classTiming(description);
+    if (classTiming != null) {
+      classTiming.wallTime.addAndGet(wallTime);
+      classTiming.cpuTime.addAndGet(cpuTime);
+      classTiming.allocatedBytes.addAndGet(allocatedBytes);
+    }
+  }
+
+  @Override
+  public void testFailure(Failure failure) {
+    ClassTiming classTiming = classTiming(failure.getDescription());
+    if (classTiming != null) {
+      classTiming.failed = true;
+    }
+  }
+
+  @Override
+  public void testRunFinished(Result result) throws Exception {
+    List<Timing> timings = collectTimings(System.currentTimeMillis());
+    this.classTimings.clear();
+
+    // The timings are written right away. Otherwise the JVM might exit before they were written.
+    try {
+      this.store.append(timings);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to write test timings to " + this.store.getFile(), e);
+    }
+  }
+
+  private ClassTiming classTiming(Description description) {
+    Class<?> testClass = description.getTestClass();
+    if (testClass == null) {
+      return null;
+    }
+
+    ClassTiming classTiming = this.classTimings.get(testClass);
+    if (classTiming == null) {
+      classTiming = new ClassTiming();
+      ClassTiming existing = this.classTimings.putIfAbsent(testClass, classTiming);
+      classTiming = existing != null ? existing : classTiming;
+    }
+
+    return classTiming;
+  }
+
+  private List<Timing> collectTimings(long timestamp) {
+    List<Timing> timings = new ArrayList<>();
+    Map<String, long[]> groupTimings = new HashMap<>();
+    Map<String, Boolean> groupFailures = new HashMap<>();
+
+    for (Entry<Class<?>, ClassTiming> entry : this.classTimings.entrySet()) {
+      ClassTiming classTiming = entry.getValue();
+      long wallTime = classTiming.wallTime.get();
+      long cpuTime = classTiming.cpuTime.get();
+      long allocatedBytes = classTiming.allocatedBytes.get();
+      timings.add(new Timing(Kind.CLASS, entry.getKey().getName(), timestamp, wallTime, cpuTime, allocatedBytes, classTiming.failed));
+
+      for (String group : TestGroupCache.declaredGroups(entry.getKey())) {
+        long[] groupTiming = groupTimings.get(group);
+        if (groupTiming == null) {
+          groupTiming = new long[3];
+          groupTimings.put(group, groupTiming);
+          groupFailures.put(group, Boolean.FALSE);
+        }
+        groupTiming[0] += wallTime;
+        groupTiming[1] += cpuTime;
+        groupTiming[2] += allocatedBytes;
+        groupFailures.put(group, groupFailures.get(group) || classTiming.failed);
+      }
+    }
+
+    for (Entry<String, long[]> entry : groupTimings.entrySet()) {
+      long[] groupTiming = entry.getValue();
+      timings.add(new Timing(Kind.GROUP, entry.getKey(), timestamp, groupTiming[0], groupTiming[1], groupTiming[2], groupFailures.get(entry.getKey())));
+    }
+
+    return timings;
+  }
+
+  private long cpuTime() {
+    return this.cpuTimeSupported ? this.threadMXBean.getCurrentThreadCpuTime() : 0;
+  }
+
+  private long allocatedBytes() {
+    return this.allocationMXBean != null ? this.allocationMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+  }
+
+  private static com.sun.management.ThreadMXBean allocationMXBean(ThreadMXBean threadMXBean) {
+    try {
+      if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (allocationMXBean.isThreadAllocatedMemorySupported() && allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+          return allocationMXBean;
+        }
+      }
+    } catch (LinkageError e) {
+      // Not a HotSpot JVM.
+    }
+
+    return null;
+  }
+
+  private static final class ClassTiming {
+
+    final AtomicLong wallTime = new AtomicLong();
+    final AtomicLong cpuTime = new AtomicLong();
+    final AtomicLong allocatedBytes = new AtomicLong();
+    volatile boolean failed;
+  }
+}
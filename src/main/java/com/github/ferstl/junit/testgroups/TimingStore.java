@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import com.github.ferstl.junit.testgroups.Timing.Kind;
+
+/**
+ * Append-only binary store for {@link Timing}s. Each recorded run appends one block that starts with a magic number
+ * followed by the number of records and the records themselves. Since blocks are self-contained, the history files of
+ * several machines can be merged by simply concatenating them. When the history is loaded, all records of the same test
+ * class or group are merged with an exponential decay, so recent runs have more weight than old ones. The store
+ * compacts itself when it contains many more records than test classes and groups.
+ */
+final class TimingStore {
+
+  /** System property with the location of the history file. */
+  static final String HISTORY_PROPERTY = "testgroup.history";
+  /** Default location of the history file. */
+  static final String DEFAULT_LOCATION = "target/testgroups-history.bin";
+  /** System property with the weight of the most recent run when merging timings. The default is {@value #DEFAULT_WEIGHT}. */
+  static final String WEIGHT_PROPERTY = "testgroup.history.weight";
+
+  static final double DEFAULT_WEIGHT = 0.5;
+  private static final int MAGIC = 0x54474831;
+  private static final int COMPACTION_FACTOR = 8;
+
+  private final File file;
+  private final double weight;
+
+  TimingStore(File file, double weight) {
+    if (weight <= 0 || weight > 1) {
+      throw new IllegalArgumentException("The weight of the most recent run must be in (0, 1]: " + weight);
+    }
+
+    this.file = file;
+    this.weight = weight;
+  }
+
+  /**
+   * Creates a store that is configured by the system properties {@value #HISTORY_PROPERTY} and {@value #WEIGHT_PROPERTY}.
+   */
+  static TimingStore fromSystemProperties() {
+    String weight = System.getProperty(WEIGHT_PROPERTY);
+
+    return new TimingStore(
+        new File(System.getProperty(HISTORY_PROPERTY, DEFAULT_LOCATION)),
+        weight != null ? Double.parseDouble(weight) : DEFAULT_WEIGHT);
+  }
+
+  /**
+   * Returns {@code true} if the given file starts like a history file.
+   */
+  static boolean isHistoryFile(File file) {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(4);
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // Read the magic number.
+      }
+
+      return !buffer.hasRemaining() && buffer.getInt(0) == MAGIC;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  File getFile() {
+    return this.file;
+  }
+
+  /**
+   * Loads and merges all timings of the given kind.
+   *
+   * @return Merged timing per test class or test group name. The map is empty if the history file does not exist.
+   * @throws IOException If the history file cannot be read.
+   */
+  Map<String, Timing> load(Kind kind) throws IOException {
+    Map<String, Timing> timings = new HashMap<>();
+    for (Timing timing : loadAll().values()) {
+      if (timing.getKind() == kind) {
+        timings.put(timing.getName(), timing);
+      }
+    }
+
+    return timings;
+  }
+
+  /**
+   * Appends the given timings as a new block.
+   *
+   * @param timings Timings of one run.
+   * @throws IOException If the history file cannot be written.
+   */
+  void append(Collection<Timing> timings) throws IOException {
+    if (timings.isEmpty()) {
+      return;
+    }
+
+    File parent = this.file.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Unable to create directory " + parent);
+    }
+
+    try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock = channel.lock()) {
+      Map<Key, Timing> existing = Collections.emptyMap();
+      Blocks blocks = new Blocks();
+      if (channel.size() > 0) {
+        existing = new HashMap<>();
+        blocks = read(Channels.newInputStream(channel.position(0)), existing);
+      }
+
+      if (blocks.records > COMPACTION_FACTOR * Math.max(existing.size(), timings.size())) {
+        // Rewrite the merged history followed by the new block.
+        channel.truncate(0);
+        channel.position(0);
+        write(channel, existing.values());
+      } else {
+        // Drop a truncated block at the end, otherwise the new block would follow it and could never be read.
+        channel.truncate(blocks.length);
+        channel.position(blocks.length);
+      }
+
+      write(channel, timings);
+    }
+  }
+
+  private Map<Key, Timing> loadAll() throws IOException {
+    Map<Key, Timing> timings = new HashMap<>();
+    if (this.file.isFile()) {
+      try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+        read(Channels.newInputStream(channel), timings);
+      }
+    }
+
+    return timings;
+  }
+
+  /**
+   * Reads all blocks and merges them into the given map. A truncated block at the end of the file, e.g. from a crashed
+   * test run, is ignored.
+   *
+   * @return The number of records and the length of the complete blocks that were read.
+   */
+  private Blocks read(InputStream is, Map<Key, Timing> timings) throws IOException {
+    CountingInputStream counter = new CountingInputStream(new BufferedInputStream(is));
+    DataInputStream in = new DataInputStream(counter);
+    Blocks blocks = new Blocks();
+    try {
+      while (true) {
+        int magic;
+        try {
+          magic = in.readInt();
+        } catch (EOFException e) {
+          return blocks;
+        }
+
+        if (magic != MAGIC) {
+          throw new IOException("Invalid history file " + this.file);
+        }
+
+        // Read the whole block before merging it, so a truncated block is ignored completely.
+        int count = in.readInt();
+        Timing[] block = new Timing[count];
+        for (int i = 0; i < count; i++) {
+          block[i] = readTiming(in);
+        }
+
+        for (Timing timing : block) {
+          Key key = new Key(timing.getKind(), timing.getName());
+          Timing previous = timings.get(key);
+          timings.put(key, previous != null ? previous.merge(timing, this.weight) : timing);
+        }
+        blocks.records += count;
+        blocks.length = counter.count;
+      }
+    } catch (EOFException e) {
+      return blocks;
+    }
+  }
+
+  private static Timing readTiming(DataInputStream in) throws IOException {
+    Kind kind = Kind.values()[in.readByte()];
+    String name = in.readUTF();
+    long timestamp = in.readLong();
+    long wallTime = in.readLong();
+    long cpuTime = in.readLong();
+    long allocatedBytes = in.readLong();
+    boolean failed = in.readBoolean();
+    long lastFailure = in.readLong();
+
+    return new Timing(kind, name, timestamp, wallTime, cpuTime, allocatedBytes, failed).withLastFailure(lastFailure);
+  }
+
+  private static void write(FileChannel channel, Collection<Timing> timings) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * timings.size());
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(timings.size());
+    for (Timing timing : timings) {
+      out.writeByte(timing.getKind().ordinal());
+      out.writeUTF(timing.getName());
+      out.writeLong(timing.getTimestamp());
+      out.writeLong(timing.getWallTime());
+      out.writeLong(timing.getCpuTime());
+      out.writeLong(timing.getAllocatedBytes());
+      out.writeBoolean(timing.isFailed());
+      out.writeLong(timing.getLastFailure());
+    }
+    out.flush();
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Number of records and length in bytes of the complete blocks of a history file.
+   */
+  private static final class Blocks {
+
+    int records;
+    long length;
+  }
+
+  private static final class CountingInputStream extends FilterInputStream {
+
+    long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        this.count++;
+      }
+
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        this.count += n;
+      }
+
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      this.count += skipped;
+
+      return skipped;
+    }
+  }
+
+  private static final class Key {
+
+    private final Kind kind;
+    private final String name;
+
+    Key(Kind kind, String name) {
+      this.kind = kind;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+
+      Key other = (Key) obj;
+      return this.kind == other.kind && this.name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * this.kind.hashCode() + this.name.hashCode();
+    }
+  }
+}
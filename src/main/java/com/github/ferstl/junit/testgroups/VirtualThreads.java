@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor and diagnostics for test classes of test groups that run on virtual threads (see
+ * {@link GroupScheduler#VIRTUAL_PROPERTY}). Virtual threads are created reflectively, so this class also works on JVMs
+ * without virtual threads. These JVMs use a pool of {@value #FALLBACK_THREADS} platform threads instead.
+ * <p>
+ * For each test class, the diagnostics contain the wall time, the CPU time if the JVM can measure it for the thread and
+ * how often and how long the virtual thread was pinned to its carrier thread. Pinning is observed with the Flight
+ * Recorder event {@code jdk.VirtualThreadPinned} if available. The recording only runs if the diagnostics are enabled.
+ * </p>
+ */
+final class VirtualThreads implements Closeable {
+
+  static final int FALLBACK_THREADS = 256;
+
+  private final ExecutorService executor;
+  private final boolean virtual;
+  private final boolean diagnosticsEnabled;
+  private final ThreadMXBean threadMXBean;
+  private final List<ClassDiagnostics> diagnostics;
+  private final ConcurrentMap<Long, ClassDiagnostics> running;
+  private final Closeable pinningMonitor;
+
+  /**
+   * @param diagnosticsEnabled {@code true} if the diagnostics will be {@link #report(PrintStream) reported}.
+   */
+  VirtualThreads(boolean diagnosticsEnabled) {
+    ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+    this.virtual = virtualExecutor != null;
+    this.diagnosticsEnabled = diagnosticsEnabled;
+    this.executor = this.virtual ? virtualExecutor : newFallbackExecutor();
+    this.threadMXBean = ManagementFactory.getThreadMXBean();
+    this.diagnostics = new CopyOnWriteArrayList<>();
+    this.running = new ConcurrentHashMap<>();
+    this.pinningMonitor = diagnosticsEnabled && this.virtual && TestGroupInstrumentation.isJfrAvailable()
+        ? JfrEvents.monitorPinnedThreads(this) : null;
+  }
+
+  boolean isVirtual() {
+    return this.virtual;
+  }
+
+  boolean isDiagnosticsEnabled() {
+    return this.diagnosticsEnabled;
+  }
+
+  /**
+   * Runs the given test class on a new virtual thread and records its diagnostics.
+   */
+  void execute(final Class<?> testClass, final Runnable child) {
+    this.executor.execute(new Runnable() {
+
+      @Override
+      public void run() {
+        long threadId = Thread.currentThread().getId();
+        ClassDiagnostics classDiagnostics = new ClassDiagnostics(testClass.getName(), cpuTime());
+        VirtualThreads.this.running.put(threadId, classDiagnostics);
+        try {
+          child.run();
+        } finally {
+          VirtualThreads.this.running.remove(threadId);
+          classDiagnostics.finish(cpuTime());
+          VirtualThreads.this.diagnostics.add(classDiagnostics);
+        }
+      }
+    });
+  }
+
+  /**
+   * Records that the given thread was pinned to its carrier thread. Called by the Flight Recorder stream.
+   */
+  void pinned(long threadId, long durationNanos) {
+    ClassDiagnostics classDiagnostics = this.running.get(threadId);
+    if (classDiagnostics != null) {
+      classDiagnostics.pinned(durationNanos);
+    }
+  }
+
+  /**
+   * Waits until all test classes have finished.
+   */
+  void awaitTermination() {
+    this.executor.shutdown();
+    try {
+      this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Prints the diagnostics of all finished test classes.
+   */
+  void report(PrintStream out) {
+    List<ClassDiagnostics> finished = new ArrayList<>(this.diagnostics);
+    if (finished.isEmpty()) {
+      return;
+    }
+
+    out.println((this.virtual ? "Virtual thread" : "Platform thread (virtual threads not available)") + " diagnostics:");
+    for (ClassDiagnostics classDiagnostics : finished) {
+      out.println("  " + classDiagnostics);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.pinningMonitor != null) {
+      this.pinningMonitor.close();
+    }
+  }
+
+  private long cpuTime() {
+    // Returns -1 for virtual threads on JVMs that cannot measure their CPU time.
+    return this.threadMXBean.isCurrentThreadCpuTimeSupported() ? this.threadMXBean.getCurrentThreadCpuTime() : -1;
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      // Virtual threads are not available or are a preview feature that is not enabled.
+      return null;
+    }
+  }
+
+  private static ExecutorService newFallbackExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(FALLBACK_THREADS, FALLBACK_THREADS, 10, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "testgroup-io-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+
+    return executor;
+  }
+
+  private static final class ClassDiagnostics {
+
+    private final String testClass;
+    private final long start;
+    private final long startCpuTime;
+    private long wallTime;
+    private long cpuTime;
+    private int pinnedCount;
+    private long pinnedTime;
+
+    ClassDiagnostics(String testClass, long startCpuTime) {
+      this.testClass = testClass;
+      this.start = System.nanoTime();
+      this.startCpuTime = startCpuTime;
+    }
+
+    synchronized void finish(long endCpuTime) {
+      this.wallTime = System.nanoTime() - this.start;
+      this.cpuTime = this.startCpuTime >= 0 && endCpuTime >= 0 ? endCpuTime - this.startCpuTime : -1;
+    }
+
+    synchronized void pinned(long durationNanos) {
+      this.pinnedCount++;
+      this.pinnedTime += durationNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+      StringBuilder sb = new StringBuilder(this.testClass)
+          .append(": wall time ").append(TimeUnit.NANOSECONDS.toMillis(this.wallTime)).append("ms");
+      if (this.cpuTime >= 0) {
+        long blocked = this.wallTime > 0 ? Math.max(0, 100 - this.cpuTime * 100 / this.wallTime) : 0;
+        sb.append(", CPU time ").append(TimeUnit.NANOSECONDS.toMillis(this.cpuTime)).append("ms (").append(blocked).append("% blocked)");
+      }
+      sb.append(", pinned ").append(this.pinnedCount).append(" times");
+      if (this.pinnedCount > 0) {
+        sb.append(" (").append(TimeUnit.NANOSECONDS.toMillis(this.pinnedTime)).append("ms)");
+      }
+
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+
+/**
+ * Protocol between the {@link TestGroupWorkerPool} and its {@link TestGroupWorker}s. The pool writes commands to the
+ * standard input of a worker: {@link #START_RUN} with the settings of a run, {@link #RUN_CLASS} with the name of a test
+ * class and {@link #STOP}. The worker answers each test class with a stream of events on its standard output. Each
+ * event is a type byte followed by the display name of a description. Failures additionally contain the serialized
+ * exception. The last event of each test class is {@link #DONE}.
+ */
+final class WorkerProtocol {
+
+  static final byte STARTED = 1;
+  static final byte FINISHED = 2;
+  static final byte FAILURE = 3;
+  static final byte ASSUMPTION_FAILURE = 4;
+  static final byte IGNORED = 5;
+  static final byte DONE = 6;
+
+  static final byte START_RUN = 10;
+  static final byte RUN_CLASS = 11;
+  static final byte STOP = 12;
+
+  private WorkerProtocol() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Returns the {@code testgroup*} system properties of this JVM, which are the settings of a run.
+   */
+  static Map<String, String> currentSettings() {
+    Map<String, String> settings = new TreeMap<>();
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (isSetting(name)) {
+        settings.put(name, System.getProperty(name));
+      }
+    }
+
+    return settings;
+  }
+
+  /**
+   * Returns the settings of a run: the {@code testgroup*} system properties of this JVM and the system properties with
+   * the given keys of {@link TestGroup} annotations.
+   */
+  static Map<String, String> currentSettings(Collection<String> keys) {
+    Map<String, String> settings = currentSettings();
+    for (String key : keys) {
+      String value = System.getProperty(key);
+      if (value != null) {
+        settings.put(key, value);
+      }
+    }
+
+    return settings;
+  }
+
+  /**
+   * Replaces the {@code testgroup*} system properties of this JVM and the settings of the previous run with the given
+   * settings.
+   */
+  static void applySettings(Map<String, String> previous, Map<String, String> settings) {
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if ((isSetting(name) || previous.containsKey(name)) && !settings.containsKey(name)) {
+        System.clearProperty(name);
+      }
+    }
+    for (Entry<String, String> setting : settings.entrySet()) {
+      System.setProperty(setting.getKey(), setting.getValue());
+    }
+  }
+
+  static void writeSettings(DataOutputStream out, Map<String, String> settings) throws IOException {
+    out.writeInt(settings.size());
+    for (Entry<String, String> setting : settings.entrySet()) {
+      out.writeUTF(setting.getKey());
+      out.writeUTF(setting.getValue());
+    }
+  }
+
+  static Map<String, String> readSettings(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    Map<String, String> settings = new TreeMap<>();
+    for (int i = 0; i < size; i++) {
+      settings.put(in.readUTF(), in.readUTF());
+    }
+
+    return settings;
+  }
+
+  static void writeEvent(DataOutputStream out, byte type, Description description) throws IOException {
+    out.writeByte(type);
+    out.writeUTF(description.getDisplayName());
+  }
+
+  static void writeFailure(DataOutputStream out, byte type, Failure failure) throws IOException {
+    writeEvent(out, type, failure.getDescription());
+    byte[] exception = serialize(failure.getException());
+    out.writeInt(exception.length);
+    out.write(exception);
+  }
+
+  /**
+   * Reads the next event and fires it on the given notifier.
+   *
+   * @return The type of the event.
+   * @throws IOException If the worker terminated.
+   */
+  static byte readEvent(DataInputStream in, RunNotifier notifier) throws IOException {
+    byte type = in.readByte();
+    Description description = Description.createSuiteDescription(in.readUTF());
+    switch (type) {
+      case STARTED:
+        notifier.fireTestStarted(description);
+        break;
+      case FINISHED:
+        notifier.fireTestFinished(description);
+        break;
+      case FAILURE:
+        notifier.fireTestFailure(new Failure(description, readException(in)));
+        break;
+      case ASSUMPTION_FAILURE:
+        notifier.fireTestAssumptionFailed(new Failure(description, readException(in)));
+        break;
+      case IGNORED:
+        notifier.fireTestIgnored(description);
+        break;
+      case DONE:
+        break;
+      default:
+        throw new IOException("Unknown event type " + type);
+    }
+
+    return type;
+  }
+
+  /**
+   * Serializes the given exception. Exceptions that cannot be serialized are replaced by a {@link RuntimeException}
+   * with the same message and stack trace.
+   */
+  private static byte[] serialize(Throwable exception) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(exception);
+    } catch (IOException e) {
+      RuntimeException replacement = new RuntimeException(exception.toString());
+      replacement.setStackTrace(exception.getStackTrace());
+      bytes.reset();
+      try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+        out.writeObject(replacement);
+      }
+    }
+
+    return bytes.toByteArray();
+  }
+
+  private static boolean isSetting(String name) {
+    return name.startsWith("testgroup") && !name.equals(TestGroupWorkerPool.JVM_ARGS_PROPERTY);
+  }
+
+  private static Throwable readException(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (Throwable) objectIn.readObject();
+    } catch (ClassNotFoundException e) {
+      return new IllegalStateException("Unable to read the exception of a worker", e);
+    }
+  }
+}
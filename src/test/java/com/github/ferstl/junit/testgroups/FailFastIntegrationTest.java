@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link GroupFailFast} and the {@link FailFastListener}.
+ */
+public class FailFastIntegrationTest {
+
+  private List<String> skipped;
+  private JUnitCore core;
+
+  @Before
+  public void before() {
+    System.setProperty(TestGroup.DEFAULT_KEY, TestGroup.ALL_GROUPS);
+    this.skipped = new CopyOnWriteArrayList<>();
+    this.core = new JUnitCore();
+    this.core.addListener(new FailFastListener());
+    this.core.addListener(new RunListener() {
+      @Override
+      public void testAssumptionFailure(Failure failure) {
+        FailFastIntegrationTest.this.skipped.add(failure.getDescription().getClassName() + ": " + failure.getMessage());
+      }
+    });
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+    System.clearProperty(GroupFailFast.FAILFAST_PROPERTY);
+    GroupFailFast.reset();
+  }
+
+  @Test
+  public void remainingClassesOfFailedGroupAreSkipped() {
+    System.setProperty(GroupFailFast.FAILFAST_PROPERTY, "failfast");
+
+    Result result = this.core.run(Failing.class, Passing1.class, Other.class, Passing2.class);
+
+    assertEquals(2, result.getRunCount());
+    assertEquals(1, result.getFailureCount());
+    String reason = "Test group failfast failed fast after a failure in test class " + Failing.class.getName();
+    assertThat(this.skipped, contains(Passing1.class.getName() + ": " + reason, Passing2.class.getName() + ": " + reason));
+  }
+
+  @Test
+  public void allGroups() {
+    System.setProperty(GroupFailFast.FAILFAST_PROPERTY, TestGroup.ALL_GROUPS);
+
+    Result result = this.core.run(Failing.class, Passing1.class, Other.class);
+
+    assertEquals(2, result.getRunCount());
+    assertEquals(1, this.skipped.size());
+  }
+
+  @Test
+  public void failedGroupsAreForgottenInTheNextRun() {
+    System.setProperty(GroupFailFast.FAILFAST_PROPERTY, "failfast");
+
+    assertEquals(1, this.core.run(Failing.class, Passing1.class).getRunCount());
+    assertEquals(1, this.core.run(Passing1.class).getRunCount());
+  }
+
+  @Test
+  public void testGroupComputerWithoutRule() {
+    System.setProperty(GroupFailFast.FAILFAST_PROPERTY, "failfast");
+
+    Result result = this.core.run(new TestGroupComputer(), FailingWithoutRule.class, PassingWithoutRule.class);
+
+    assertEquals(1, result.getRunCount());
+    assertEquals(1, result.getFailureCount());
+    assertEquals(1, result.getIgnoreCount());
+  }
+
+  @Test
+  public void failFastDisabled() {
+    Result result = this.core.run(Failing.class, Passing1.class, Other.class, Passing2.class);
+
+    assertEquals(4, result.getRunCount());
+    assertThat(this.skipped, empty());
+  }
+
+  @TestGroup("failfast")
+  public static class Failing {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() {
+      throw new AssertionError("broken environment");
+    }
+  }
+
+  @TestGroup("failfast")
+  public static class Passing1 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup({"failfast", "other"})
+  public static class Passing2 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("failfast")
+  public static class FailingWithoutRule {
+
+    @Test
+    public void test() {
+      throw new AssertionError("broken environment");
+    }
+  }
+
+  @TestGroup("failfast")
+  public static class PassingWithoutRule {
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("other")
+  public static class Other {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() {}
+  }
+}
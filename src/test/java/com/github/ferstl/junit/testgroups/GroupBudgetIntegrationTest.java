@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import com.github.ferstl.junit.testgroups.Timing.Kind;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link GroupBudgets}.
+ */
+public class GroupBudgetIntegrationTest {
+
+  static final AtomicInteger EXECUTED = new AtomicInteger();
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Before
+  public void before() {
+    EXECUTED.set(0);
+    System.setProperty(TestGroup.DEFAULT_KEY, "budget");
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+    System.clearProperty(GroupBudgets.BUDGET_PROPERTY);
+    System.clearProperty(GroupBudgets.INTERRUPT_PROPERTY);
+    System.clearProperty(TimingStore.HISTORY_PROPERTY);
+    GroupBudgets.reset();
+  }
+
+  @Test
+  public void remainingClassesAreSkipped() {
+    System.setProperty(GroupBudgets.BUDGET_PROPERTY, "budget:100ms");
+
+    Result result = JUnitCore.runClasses(Slow1.class, Slow2.class, Slow3.class);
+
+    assertEquals(1, EXECUTED.get());
+    assertEquals(0, result.getFailureCount());
+  }
+
+  @Test
+  public void budgetsStartFromScratchInTheNextRun() {
+    System.setProperty(GroupBudgets.BUDGET_PROPERTY, "budget:100ms");
+    JUnitCore core = new JUnitCore();
+    core.addListener(new FailFastListener());
+
+    core.run(Slow1.class, Slow2.class, Slow3.class);
+    core.run(Slow1.class, Slow2.class, Slow3.class);
+
+    assertEquals(2, EXECUTED.get());
+  }
+
+  @Test
+  public void budgetNotExhausted() {
+    System.setProperty(GroupBudgets.BUDGET_PROPERTY, "budget:1m,other:1ms");
+
+    JUnitCore.runClasses(Slow1.class, Slow2.class, Slow3.class);
+
+    assertEquals(3, EXECUTED.get());
+  }
+
+  @Test
+  public void interruptClassThatRunsTooLong() throws IOException {
+    File history = new File(this.tempFolder.getRoot(), "history.bin");
+    new TimingStore(history, 1).append(Arrays.asList(
+        new Timing(Kind.CLASS, Hanging.class.getName(), 1, TimeUnit.MILLISECONDS.toNanos(50), 0, 0, false)));
+    System.setProperty(TimingStore.HISTORY_PROPERTY, history.getPath());
+    System.setProperty(GroupBudgets.INTERRUPT_PROPERTY, "2");
+
+    Result result = JUnitCore.runClasses(Hanging.class);
+
+    Failure classFailure = result.getFailures().get(result.getFailureCount() - 1);
+    assertEquals(Hanging.class.getName(), classFailure.getDescription().getClassName());
+    assertThat(classFailure.getMessage(), containsString("was interrupted"));
+    assertEquals(false, Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  public void parseDuration() {
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(500), GroupBudgets.parseDuration("500ms", "group"));
+    assertEquals(TimeUnit.SECONDS.toNanos(90), GroupBudgets.parseDuration("90", "group"));
+    assertEquals(TimeUnit.SECONDS.toNanos(90), GroupBudgets.parseDuration("1.5m", "group"));
+    assertEquals(TimeUnit.HOURS.toNanos(2), GroupBudgets.parseDuration("2h", "group"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidDuration() {
+    GroupBudgets.parseDuration("5 minutes", "group");
+  }
+
+  @TestGroup("budget")
+  public static class Slow1 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() throws Exception {
+      EXECUTED.incrementAndGet();
+      Thread.sleep(150);
+    }
+  }
+
+  @TestGroup("budget")
+  public static class Slow2 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() throws Exception {
+      EXECUTED.incrementAndGet();
+      Thread.sleep(150);
+    }
+  }
+
+  @TestGroup("budget")
+  public static class Slow3 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() throws Exception {
+      EXECUTED.incrementAndGet();
+      Thread.sleep(150);
+    }
+  }
+
+  @TestGroup("budget")
+  public static class Hanging {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() throws Exception {
+      Thread.sleep(10_000);
+    }
+  }
+}
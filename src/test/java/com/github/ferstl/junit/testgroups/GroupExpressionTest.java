@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link GroupExpression}.
+ */
+public class GroupExpressionTest {
+
+  @Rule
+  public ExpectedException expEx = ExpectedException.none();
+
+  @Test
+  public void emptySelection() {
+    assertTrue(matches(""));
+    assertTrue(matches(null));
+    assertFalse(matches("", "a"));
+  }
+
+  @Test
+  public void commaSeparated() {
+    assertTrue(matches("a,b", "b", "c"));
+    assertTrue(matches("a,,b", "b"));
+    assertFalse(matches("a,b", "c"));
+    assertFalse(matches("a,b"));
+  }
+
+  @Test
+  public void enabledGroupsDeclaredAndEnabled() {
+    assertTrue(matches("group2,group3", "group1", "group2"));
+  }
+
+  @Test
+  public void enabledGroupsDeclaredAndNotEnabled() {
+    assertFalse(matches("group3,group4", "group1", "group2"));
+  }
+
+  @Test
+  public void allGroups() {
+    assertTrue(matches(TestGroup.ALL_GROUPS, "a"));
+    assertTrue(matches(TestGroup.ALL_GROUPS));
+    assertTrue(matches("b," + TestGroup.ALL_GROUPS, "a"));
+  }
+
+  @Test
+  public void and() {
+    assertTrue(matches("a & b", "a", "b"));
+    assertFalse(matches("a & b", "a"));
+  }
+
+  @Test
+  public void not() {
+    assertTrue(matches("!a", "b"));
+    assertFalse(matches("!a", "a", "b"));
+    assertTrue(matches("!!a", "a"));
+  }
+
+  @Test
+  public void precedence() {
+    assertTrue(matches("integration & !slow | smoke", "smoke", "slow"));
+    assertTrue(matches("integration & !slow | smoke", "integration"));
+    assertFalse(matches("integration & !slow | smoke", "integration", "slow"));
+  }
+
+  @Test
+  public void parentheses() {
+    assertFalse(matches("integration & !(slow | smoke)", "integration", "smoke"));
+    assertTrue(matches("(a, b) & c", "b", "c"));
+  }
+
+  @Test
+  public void missingParenthesis() {
+    this.expEx.expect(IllegalArgumentException.class);
+    this.expEx.expectMessage("Missing ')'");
+
+    GroupExpression.compile("(a | b");
+  }
+
+  @Test
+  public void missingName() {
+    this.expEx.expect(IllegalArgumentException.class);
+    this.expEx.expectMessage("Test group name expected");
+
+    GroupExpression.compile("a & ");
+  }
+
+  @Test
+  public void unexpectedCharacter() {
+    this.expEx.expect(IllegalArgumentException.class);
+    this.expEx.expectMessage("Unexpected ')'");
+
+    GroupExpression.compile("a)");
+  }
+
+  @Test
+  public void toStringReturnsSource() {
+    assertEquals("a & !b", GroupExpression.compile(" a & !b ").toString());
+  }
+
+  @Test
+  public void selectedGroups() {
+    assertEquals(Arrays.asList("a", "b"), new ArrayList<>(GroupExpression.compile("(a | b) & !c").selectedGroups()));
+    assertEquals(Arrays.asList(TestGroup.ALL_GROUPS), new ArrayList<>(GroupExpression.compile("all & !slow").selectedGroups()));
+    assertEquals(Arrays.asList("b"), new ArrayList<>(GroupExpression.compile("!(a & !b)").selectedGroups()));
+    assertTrue(GroupExpression.compile("").selectedGroups().isEmpty());
+  }
+
+  private static boolean matches(String expression, String... declaredGroups) {
+    BitSet declared = declaredGroups.length == 0
+        ? GroupExpression.toBitSet(Collections.<String>emptyList())
+        : GroupExpression.toBitSet(Arrays.asList(declaredGroups));
+
+    return GroupExpression.compile(expression).matches(declared);
+  }
+}
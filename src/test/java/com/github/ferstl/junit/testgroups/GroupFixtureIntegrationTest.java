@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.MultipleFailureException;
+import org.junit.runners.model.Statement;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link GroupFixtures}.
+ */
+public class GroupFixtureIntegrationTest {
+
+  static final CountingFixture FIXTURE = new CountingFixture();
+
+  @BeforeClass
+  public static void beforeClass() {
+    GroupFixtures.register("fixture", FIXTURE);
+    GroupFixtures.register("broken", new BrokenFixture());
+    GroupFixtures.register("broken", new BrokenFixture());
+    GroupFixtures.register("brokenwrap", new BrokenFixture());
+  }
+
+  @Before
+  public void before() {
+    FIXTURE.setUps.set(0);
+    FIXTURE.tearDowns.set(0);
+    FIXTURE.running = false;
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+    System.clearProperty(GroupScheduler.PARALLELISM_PROPERTY);
+    System.clearProperty(GroupFailFast.FAILFAST_PROPERTY);
+    GroupFailFast.reset();
+  }
+
+  @Test
+  public void sharedBySerialTestClasses() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "fixture");
+
+    Result result = JUnitCore.runClasses(new TestGroupComputer(), Fixture1.class, Fixture2.class, Fixture3.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(1, FIXTURE.setUps.get());
+    assertEquals(1, FIXTURE.tearDowns.get());
+  }
+
+  @Test
+  public void sharedByParallelTestClasses() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "fixture");
+    System.setProperty(GroupScheduler.PARALLELISM_PROPERTY, "3");
+
+    Result result = JUnitCore.runClasses(TestGroupComputer.parallel(), Fixture1.class, Fixture2.class, Fixture3.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(1, FIXTURE.setUps.get());
+    assertEquals(1, FIXTURE.tearDowns.get());
+  }
+
+  @Test
+  public void disabledGroupDoesNotSetUpFixture() {
+    Result result = JUnitCore.runClasses(new TestGroupComputer(), Fixture1.class, Fixture2.class);
+
+    assertEquals(0, result.getRunCount());
+    assertEquals(0, FIXTURE.setUps.get());
+  }
+
+  @Test
+  public void fixtureWithoutComputerLivesUntilTornDown() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "fixture");
+
+    JUnitCore.runClasses(Fixture1.class);
+    JUnitCore.runClasses(Fixture2.class);
+
+    assertEquals(1, FIXTURE.setUps.get());
+    assertEquals(0, FIXTURE.tearDowns.get());
+
+    GroupFixtures.tearDownAll();
+    assertEquals(1, FIXTURE.tearDowns.get());
+  }
+
+  @Test
+  public void tornDownWhenExpectedClassesAreFilteredOut() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "fixture");
+
+    Request request = Request.classes(new TestGroupComputer(), Fixture1.class, Fixture2.class)
+        .filterWith(Description.createTestDescription(Fixture1.class, "test"));
+    Result result = new JUnitCore().run(request);
+
+    assertEquals(1, result.getRunCount());
+    assertEquals(1, FIXTURE.tearDowns.get());
+  }
+
+  @Test
+  public void tornDownWhenExpectedClassesAreSkipped() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "fixture");
+    System.setProperty(GroupFailFast.FAILFAST_PROPERTY, "fixture");
+    JUnitCore core = new JUnitCore();
+    core.addListener(new FailFastListener());
+
+    Result result = core.run(new TestGroupComputer(), FailingFixture.class, Fixture2.class);
+
+    assertEquals(1, result.getRunCount());
+    assertEquals(1, FIXTURE.setUps.get());
+    assertEquals(1, FIXTURE.tearDowns.get());
+  }
+
+  @Test
+  public void failedTearDownDoesNotHideTheTestFailure() throws Throwable {
+    GroupFixtures.expect(BrokenWrap.class);
+    Statement statement = GroupFixtures.wrap(BrokenWrap.class, new Statement() {
+
+      @Override
+      public void evaluate() {
+        // The fixture is torn down when the statement releases it.
+        GroupFixtures.finished(BrokenWrap.class, Description.createSuiteDescription(BrokenWrap.class), new RunNotifier());
+        throw new AssertionError("test failure");
+      }
+    });
+
+    try {
+      statement.evaluate();
+      fail("Expected a MultipleFailureException");
+    } catch (MultipleFailureException e) {
+      assertEquals("test failure", e.getFailures().get(0).getMessage());
+      assertEquals("broken tear down", e.getFailures().get(1).getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void failedTearDownsAreRethrown() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "fixture,broken");
+
+    JUnitCore.runClasses(Fixture1.class, Broken.class);
+
+    try {
+      GroupFixtures.tearDownAll();
+      fail("Expected an IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertEquals("broken tear down", e.getCause().getMessage());
+      assertEquals(1, e.getSuppressed().length);
+    }
+    assertEquals(1, FIXTURE.tearDowns.get());
+  }
+
+  static void useFixture() {
+    assertNotNull(GroupFixtures.get(CountingFixture.class));
+    assertTrue(FIXTURE.running);
+  }
+
+  static class CountingFixture implements GroupFixture {
+
+    final AtomicInteger setUps = new AtomicInteger();
+    final AtomicInteger tearDowns = new AtomicInteger();
+    volatile boolean running;
+
+    @Override
+    public void setUp() {
+      this.setUps.incrementAndGet();
+      this.running = true;
+    }
+
+    @Override
+    public void tearDown() {
+      this.tearDowns.incrementAndGet();
+      this.running = false;
+    }
+  }
+
+  static class BrokenFixture implements GroupFixture {
+
+    @Override
+    public void setUp() {}
+
+    @Override
+    public void tearDown() {
+      throw new IllegalStateException("broken tear down");
+    }
+  }
+
+  @TestGroup("brokenwrap")
+  public static class BrokenWrap {}
+
+  @TestGroup("fixture")
+  public static class FailingFixture {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() {
+      useFixture();
+      fail("expected failure");
+    }
+  }
+
+  @TestGroup("broken")
+  public static class Broken {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("fixture")
+  public static class Fixture1 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() throws Exception {
+      useFixture();
+      Thread.sleep(20);
+    }
+  }
+
+  @TestGroup("fixture")
+  public static class Fixture2 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() throws Exception {
+      useFixture();
+      Thread.sleep(20);
+    }
+  }
+
+  @TestGroup("fixture")
+  public static class Fixture3 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() throws Exception {
+      useFixture();
+      Thread.sleep(20);
+    }
+  }
+}
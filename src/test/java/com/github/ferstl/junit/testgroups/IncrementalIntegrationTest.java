@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the incremental mode ({@link IncrementalState}, {@link IncrementalRecorder} and {@link ClassFingerprint}).
+ */
+public class IncrementalIntegrationTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Before
+  public void before() {
+    File state = new File(this.tempFolder.getRoot(), "state/incremental.properties");
+    System.setProperty(IncrementalState.STATE_PROPERTY, state.getPath());
+    PassingClass.RUNS.set(0);
+    FailingClass.RUNS.set(0);
+    TwoMethodClass.RUNS.set(0);
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(IncrementalState.STATE_PROPERTY);
+    System.clearProperty(IncrementalState.INCREMENTAL_PROPERTY);
+  }
+
+  @Test
+  public void skipUnchangedPassedClasses() {
+    System.setProperty(IncrementalState.INCREMENTAL_PROPERTY, "true");
+
+    run();
+    assertEquals(1, PassingClass.RUNS.get());
+    assertEquals(1, FailingClass.RUNS.get());
+
+    Result result = run();
+    assertEquals(1, PassingClass.RUNS.get());
+    assertEquals(2, FailingClass.RUNS.get());
+    assertEquals(1, result.getFailureCount());
+  }
+
+  @Test
+  public void runAllClassesWithoutIncrementalMode() {
+    run();
+    run();
+
+    assertEquals(2, PassingClass.RUNS.get());
+    assertEquals(2, FailingClass.RUNS.get());
+  }
+
+  @Test
+  public void partialRunsDoNotMarkTheTestClassAsPassed() {
+    System.setProperty(IncrementalState.INCREMENTAL_PROPERTY, "true");
+    JUnitCore core = new JUnitCore();
+    core.addListener(new IncrementalRecorder());
+
+    core.run(Request.method(TwoMethodClass.class, "first"));
+    assertEquals(1, TwoMethodClass.RUNS.get());
+
+    core.run(new TestGroupComputer(), TwoMethodClass.class);
+    assertEquals(3, TwoMethodClass.RUNS.get());
+
+    core.run(new TestGroupComputer(), TwoMethodClass.class);
+    assertEquals(3, TwoMethodClass.RUNS.get());
+  }
+
+  @Test
+  public void fingerprintIncludesReferencedClasses() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (InputStream is = PassingClass.class.getResourceAsStream("IncrementalIntegrationTest$PassingClass.class")) {
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = is.read(buffer)) >= 0) {
+        bytes.write(buffer, 0, read);
+      }
+    }
+
+    assertThat(ClassFileReader.readReferencedClasses(bytes.toByteArray()), hasItem("java/util/concurrent/atomic/AtomicInteger"));
+    assertNotNull(ClassFingerprint.of(PassingClass.class));
+    assertEquals(ClassFingerprint.of(PassingClass.class), ClassFingerprint.compute(PassingClass.class.getName(), getClass().getClassLoader()));
+  }
+
+  private static Result run() {
+    JUnitCore core = new JUnitCore();
+    core.addListener(new IncrementalRecorder());
+    return core.run(new TestGroupComputer(), PassingClass.class, FailingClass.class);
+  }
+
+  public static class PassingClass {
+
+    static final AtomicInteger RUNS = new AtomicInteger();
+
+    @Test
+    public void test() {
+      RUNS.incrementAndGet();
+    }
+  }
+
+  public static class TwoMethodClass {
+
+    static final AtomicInteger RUNS = new AtomicInteger();
+
+    @Test
+    public void first() {
+      RUNS.incrementAndGet();
+    }
+
+    @Test
+    public void second() {
+      RUNS.incrementAndGet();
+    }
+  }
+
+  public static class FailingClass {
+
+    static final AtomicInteger RUNS = new AtomicInteger();
+
+    @Test
+    public void test() {
+      RUNS.incrementAndGet();
+      fail("boom");
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TestGroupInstrumentation}, {@link JfrEvents} and {@link TestGroupMetrics}.
+ */
+public class InstrumentationIntegrationTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private ObjectName objectName;
+
+  @Before
+  public void before() throws Exception {
+    System.setProperty(TestGroup.DEFAULT_KEY, "instrumented");
+    this.objectName = new ObjectName(TestGroupMetrics.OBJECT_NAME);
+  }
+
+  @After
+  public void after() throws Exception {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+    System.clearProperty(TestGroupSorter.ORDER_PROPERTY);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    if (TestGroupInstrumentation.metrics() == null && server.isRegistered(this.objectName)) {
+      server.unregisterMBean(this.objectName);
+    }
+  }
+
+  @Test
+  public void flightRecorderEvents() throws IOException {
+    File file = new File(this.tempFolder.getRoot(), "recording.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("com.github.ferstl.junit.testgroups.Decision");
+      recording.enable("com.github.ferstl.junit.testgroups.RuleEvaluation");
+      recording.enable("com.github.ferstl.junit.testgroups.ClassExecution");
+      recording.start();
+      JUnitCore.runClasses(Instrumented.class, NotInstrumented.class);
+      recording.stop();
+      recording.dump(file.toPath());
+    }
+
+    Map<String, RecordedEvent> decisions = new HashMap<>();
+    int ruleEvaluations = 0;
+    RecordedEvent execution = null;
+    for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+      switch (event.getEventType().getName()) {
+        case "com.github.ferstl.junit.testgroups.Decision":
+          decisions.put(event.getClass("testClass").getName(), event);
+          break;
+        case "com.github.ferstl.junit.testgroups.RuleEvaluation":
+          ruleEvaluations++;
+          break;
+        case "com.github.ferstl.junit.testgroups.ClassExecution":
+          execution = event;
+          break;
+        default:
+          break;
+      }
+    }
+
+    RecordedEvent enabled = decisions.get(Instrumented.class.getName());
+    assertEquals(false, enabled.getBoolean("skipped"));
+    assertNull(enabled.getString("reason"));
+    assertEquals("instrumented", enabled.getString("groups"));
+
+    RecordedEvent disabled = decisions.get(NotInstrumented.class.getName());
+    assertEquals(true, disabled.getBoolean("skipped"));
+    assertNotNull(disabled.getString("reason"));
+
+    assertEquals(2, ruleEvaluations);
+    assertNotNull(execution);
+    assertEquals(Instrumented.class.getName(), execution.getClass("testClass").getName());
+    assertEquals(false, execution.getBoolean("failed"));
+  }
+
+  @Test
+  public void oneDecisionPerTestClass() throws IOException {
+    System.setProperty(TestGroupSorter.ORDER_PROPERTY, "longest");
+    File file = new File(this.tempFolder.getRoot(), "decisions.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("com.github.ferstl.junit.testgroups.Decision");
+      recording.start();
+      JUnitCore.runClasses(new TestGroupComputer(), Instrumented.class, NotInstrumented.class);
+      recording.stop();
+      recording.dump(file.toPath());
+    }
+
+    Map<String, Integer> decisions = new HashMap<>();
+    for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+      if (!"com.github.ferstl.junit.testgroups.Decision".equals(event.getEventType().getName())) {
+        continue;
+      }
+      String testClass = event.getClass("testClass").getName();
+      decisions.put(testClass, decisions.containsKey(testClass) ? decisions.get(testClass) + 1 : 1);
+    }
+
+    assertEquals(Integer.valueOf(1), decisions.get(Instrumented.class.getName()));
+    assertEquals(Integer.valueOf(1), decisions.get(NotInstrumented.class.getName()));
+  }
+
+  @Test
+  public void metricsMXBean() throws Exception {
+    TestGroupMetrics metrics = TestGroupInstrumentation.metrics();
+    if (metrics == null) {
+      metrics = TestGroupMetrics.register();
+    }
+    metrics.reset();
+
+    metrics.decision(Collections.singleton("instrumented"), false, 1_000);
+    metrics.decision(Collections.singleton("instrumented"), true, 3_000);
+    metrics.decision(Collections.<String>emptySet(), false, 5_000);
+    metrics.execution(Collections.singleton("instrumented"), TimeUnit.MILLISECONDS.toNanos(100));
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    assertEquals(3L, server.getAttribute(this.objectName, "DecisionCount"));
+    assertEquals(3_000L, server.getAttribute(this.objectName, "MeanDecisionLatencyNanos"));
+    long p99 = (Long) server.getAttribute(this.objectName, "P99DecisionLatencyNanos");
+    assertTrue("p99: " + p99, p99 >= 5_000 && p99 < 10_000);
+
+    CompositeData[] groups = (CompositeData[]) server.getAttribute(this.objectName, "GroupStatistics");
+    assertEquals(2, groups.length);
+    assertEquals(TestGroupMetrics.NO_GROUP, groups[0].get("group"));
+    assertEquals(1L, groups[0].get("runClasses"));
+    assertEquals("instrumented", groups[1].get("group"));
+    assertEquals(1L, groups[1].get("runClasses"));
+    assertEquals(1L, groups[1].get("skippedClasses"));
+    assertEquals(100L, groups[1].get("totalDurationMillis"));
+
+    server.invoke(this.objectName, "reset", new Object[0], new String[0]);
+    assertEquals(0L, server.getAttribute(this.objectName, "DecisionCount"));
+  }
+
+  @TestGroup("instrumented")
+  public static class Instrumented {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("other")
+  public static class NotInstrumented {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() {}
+  }
+}
@@ -46,6 +46,7 @@ public class IntegrationTest {
     System.clearProperty(TestGroup.DEFAULT_KEY);
     System.clearProperty(USER_DEFINED_KEY);
     System.clearProperty(PackageTest.TEST_GROUP_KEY);
+    System.clearProperty(Shard.SHARD_PROPERTY);
   }
 
   @Test
@@ -106,6 +107,24 @@ public class IntegrationTest {
     assertEquals(1, result.getRunCount());
   }
 
+  @Test
+  public void userDefinedGroupExpression() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "all & !" + USER_DEFINED_GROUP);
+
+    Result result = JUnitCore.runClasses(UserDefinedGroup.class, DefaultTestGroup.class);
+    assertEquals(1, result.getRunCount());
+  }
+
+  @Test
+  public void shards() {
+    System.setProperty(Shard.SHARD_PROPERTY, "1/2");
+    Result result1 = JUnitCore.runClasses(DefaultTestGroup.class, ClassRuleWithoutTestGroup.class);
+    System.setProperty(Shard.SHARD_PROPERTY, "2/2");
+    Result result2 = JUnitCore.runClasses(DefaultTestGroup.class, ClassRuleWithoutTestGroup.class);
+
+    assertEquals(2, result1.getRunCount() + result2.getRunCount());
+  }
+
   @Test
   public void userDefinedKeyDisabled() {
     Result result = JUnitCore.runClasses(UserDefinedKey.class);
@@ -129,7 +148,15 @@ public class IntegrationTest {
 
   @Test
   public void subPackageTest() {
-    // Sub packages are not affected of a test group annotation in the parent package.
+    // Sub packages inherit the test group annotation of their parent package.
+    Result result = JUnitCore.runClasses(SubPackageTest.class);
+
+    assertEquals(0, result.getRunCount());
+  }
+
+  @Test
+  public void subPackageTestEnabled() {
+    System.setProperty(PackageTest.TEST_GROUP_KEY, PackageTest.TEST_GROUP_NAME);
     Result result = JUnitCore.runClasses(SubPackageTest.class);
 
     assertEquals(1, result.getRunCount());
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link TestGroupMethodRule}.
+ */
+public class MethodGroupIntegrationTest {
+
+  static final Set<String> EXECUTED = Collections.synchronizedSet(new HashSet<String>());
+
+  @Before
+  public void before() {
+    EXECUTED.clear();
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+  }
+
+  @Test
+  public void classGroupOnly() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "fast");
+
+    Result result = JUnitCore.runClasses(FastClass.class);
+
+    assertThat(EXECUTED, containsInAnyOrder("fastTest", "slowTest"));
+    assertEquals(0, result.getFailureCount());
+  }
+
+  @Test
+  public void excludeMethodGroup() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "fast&!slow");
+
+    Result result = JUnitCore.runClasses(FastClass.class);
+
+    assertThat(EXECUTED, containsInAnyOrder("fastTest"));
+    assertEquals(0, result.getFailureCount());
+  }
+
+  @Test
+  public void methodGroupInDisabledClass() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "slow");
+
+    JUnitCore.runClasses(FastClass.class);
+
+    assertThat(EXECUTED, empty());
+  }
+
+  @Test
+  public void differentKey() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "fast");
+
+    JUnitCore.runClasses(OtherKeyClass.class);
+
+    assertThat(EXECUTED, containsInAnyOrder("test"));
+  }
+
+  @TestGroup("fast")
+  public static class FastClass {
+
+    @ClassRule
+    public static TestGroupRule testGroupRule = TestGroupRule.create();
+
+    @Rule
+    public TestGroupMethodRule testGroupMethodRule = TestGroupMethodRule.create();
+
+    @Test
+    public void fastTest() {
+      EXECUTED.add("fastTest");
+    }
+
+    @Test
+    @TestGroup("slow")
+    public void slowTest() {
+      EXECUTED.add("slowTest");
+    }
+  }
+
+  @TestGroup("fast")
+  public static class OtherKeyClass {
+
+    @Rule
+    public TestGroupMethodRule testGroupMethodRule = TestGroupMethodRule.create();
+
+    @Test
+    public void test() {
+      EXECUTED.add("test");
+    }
+
+    @Test
+    @TestGroup(key = "otherkey", value = "slow")
+    public void otherKeyTest() {
+      EXECUTED.add("otherKeyTest");
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.Runner;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the parallel {@link TestGroupComputer}.
+ */
+public class ParallelComputerIntegrationTest {
+
+  static final AtomicInteger RUNNING = new AtomicInteger();
+  static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+  static volatile CountDownLatch latch;
+
+  @Before
+  public void before() {
+    RUNNING.set(0);
+    MAX_RUNNING.set(0);
+    System.setProperty(TestGroup.DEFAULT_KEY, TestGroup.ALL_GROUPS);
+    System.setProperty(GroupScheduler.PARALLELISM_PROPERTY, "4");
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+    System.clearProperty(GroupScheduler.PARALLELISM_PROPERTY);
+    System.clearProperty(GroupScheduler.CONCURRENCY_PROPERTY);
+    System.clearProperty(ResourceLocks.RESOURCES_PROPERTY);
+  }
+
+  @Test
+  public void unboundedGroup() {
+    latch = new CountDownLatch(4);
+
+    Result result = JUnitCore.runClasses(TestGroupComputer.parallel(), Unbounded1.class, Unbounded2.class, Unbounded3.class, Unbounded4.class);
+
+    assertEquals(4, result.getRunCount());
+    assertEquals(0, result.getFailureCount());
+  }
+
+  @Test
+  public void limitedGroup() {
+    System.setProperty(GroupScheduler.CONCURRENCY_PROPERTY, "db:1");
+
+    Result result = JUnitCore.runClasses(TestGroupComputer.parallel(), Db1.class, Db2.class, Db3.class, Db4.class);
+
+    assertEquals(4, result.getRunCount());
+    assertEquals(1, MAX_RUNNING.get());
+  }
+
+  @Test
+  public void sameRunnerTwice() {
+    System.setProperty(GroupScheduler.CONCURRENCY_PROPERTY, "db:1");
+    Runner runner = Request.classes(TestGroupComputer.parallel(), Db1.class, Db2.class).getRunner();
+
+    Result first = new JUnitCore().run(runner);
+    Result second = new JUnitCore().run(runner);
+
+    assertEquals(0, first.getFailureCount());
+    assertEquals(0, second.getFailureCount());
+    assertEquals(2, second.getRunCount());
+  }
+
+  @Test
+  public void limitOfTwo() {
+    System.setProperty(GroupScheduler.CONCURRENCY_PROPERTY, "unit:0,db:2");
+
+    Result result = JUnitCore.runClasses(TestGroupComputer.parallel(), Db1.class, Db2.class, Db3.class, Db4.class);
+
+    assertEquals(4, result.getRunCount());
+    assertTrue(MAX_RUNNING.get() <= 2);
+  }
+
+  @Test
+  public void sharedResource() {
+    System.setProperty(ResourceLocks.RESOURCES_PROPERTY, "db:database, filesystem:database");
+
+    Result result = JUnitCore.runClasses(TestGroupComputer.parallel(), Db2.class, Db3.class, FileSystem1.class);
+
+    assertEquals(3, result.getRunCount());
+    assertEquals(1, MAX_RUNNING.get());
+  }
+
+  @Test
+  public void resourceStripes() {
+    Map<String, List<String>> resources = new HashMap<>();
+    resources.put("integration", Arrays.asList("port:8080", "port:8081"));
+    resources.put("db", Arrays.asList("port:8080"));
+    ResourceLocks locks = new ResourceLocks(resources, 64);
+
+    assertEquals(2, locks.getStripes(Db1.class).length);
+    assertEquals(1, locks.getStripes(Db2.class).length);
+    assertEquals(0, locks.getStripes(Unbounded1.class).length);
+    assertTrue(locks.getStripes(Db1.class)[0] < locks.getStripes(Db1.class)[1]);
+  }
+
+  @Test
+  public void disabledGroupsAreSkipped() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "unit");
+    latch = new CountDownLatch(0);
+
+    Result result = JUnitCore.runClasses(TestGroupComputer.parallel(), Unbounded1.class, Db1.class);
+
+    assertEquals(1, result.getRunCount());
+    assertEquals(0, MAX_RUNNING.get());
+  }
+
+  static void awaitAll() throws InterruptedException {
+    latch.countDown();
+    assertTrue("Test classes were not run in parallel", latch.await(10, TimeUnit.SECONDS));
+  }
+
+  static void countConcurrent() throws InterruptedException {
+    int running = RUNNING.incrementAndGet();
+    int max;
+    while ((max = MAX_RUNNING.get()) < running && !MAX_RUNNING.compareAndSet(max, running)) {
+      // retry
+    }
+
+    Thread.sleep(50);
+    RUNNING.decrementAndGet();
+  }
+
+  @TestGroup("unit")
+  public static class Unbounded1 {
+    @Test
+    public void test() throws Exception {
+      awaitAll();
+    }
+  }
+
+  @TestGroup("unit")
+  public static class Unbounded2 {
+    @Test
+    public void test() throws Exception {
+      awaitAll();
+    }
+  }
+
+  @TestGroup("unit")
+  public static class Unbounded3 {
+    @Test
+    public void test() throws Exception {
+      awaitAll();
+    }
+  }
+
+  @TestGroup("unit")
+  public static class Unbounded4 {
+    @Test
+    public void test() throws Exception {
+      awaitAll();
+    }
+  }
+
+  @TestGroup({"db", "integration"})
+  public static class Db1 {
+    @Test
+    public void test() throws Exception {
+      countConcurrent();
+    }
+  }
+
+  @TestGroup("db")
+  public static class Db2 {
+    @Test
+    public void test() throws Exception {
+      countConcurrent();
+    }
+  }
+
+  @TestGroup("db")
+  public static class Db3 {
+    @Test
+    public void test() throws Exception {
+      countConcurrent();
+    }
+  }
+
+  @TestGroup("db")
+  public static class Db4 {
+    @Test
+    public void test() throws Exception {
+      countConcurrent();
+    }
+  }
+
+  @TestGroup("filesystem")
+  public static class FileSystem1 {
+    @Test
+    public void test() throws Exception {
+      countConcurrent();
+    }
+  }
+}
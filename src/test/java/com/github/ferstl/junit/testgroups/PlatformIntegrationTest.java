@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.platform.engine.TestEngine;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.PostDiscoveryFilter;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherConfig;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import static org.junit.Assert.assertEquals;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
+
+/**
+ * Tests for {@link TestGroupPostDiscoveryFilter} and {@link TestGroupCondition}.
+ */
+public class PlatformIntegrationTest {
+
+  @Before
+  public void before() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "platform");
+    EnabledClass.INSTANCES.set(0);
+    DisabledClass.INSTANCES.set(0);
+    DisabledOuterClass.INSTANCES.set(0);
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+    System.clearProperty(GroupFailFast.FAILFAST_PROPERTY);
+    GroupFailFast.reset();
+  }
+
+  @Test
+  public void postDiscoveryFilter() {
+    Launcher launcher = LauncherFactory.create();
+    LauncherDiscoveryRequest request = request().selectors(selectClass(EnabledClass.class), selectClass(DisabledClass.class)).build();
+
+    TestPlan testPlan = launcher.discover(request);
+    assertEquals(1, testPlan.getChildren(testPlan.getRoots().iterator().next()).size());
+
+    TestExecutionSummary summary = execute(launcher, request);
+    assertEquals(2, summary.getTestsSucceededCount());
+    assertEquals(0, summary.getContainersSkippedCount());
+    assertEquals(2, EnabledClass.INSTANCES.get());
+    assertEquals(0, DisabledClass.INSTANCES.get());
+  }
+
+  @Test
+  public void executionCondition() {
+    Launcher launcher = LauncherFactory.create(new ConfigWithoutFilters());
+    LauncherDiscoveryRequest request = request().selectors(selectClass(EnabledClass.class), selectClass(DisabledClass.class)).build();
+
+    TestExecutionSummary summary = execute(launcher, request);
+    assertEquals(2, summary.getTestsSucceededCount());
+    assertEquals(1, summary.getContainersSkippedCount());
+    assertEquals(2, EnabledClass.INSTANCES.get());
+    assertEquals(0, DisabledClass.INSTANCES.get());
+  }
+
+  @Test
+  public void methodGroups() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "platform&!slow");
+    LauncherDiscoveryRequest request = request().selectors(selectClass(EnabledClass.class)).build();
+
+    TestExecutionSummary filtered = execute(LauncherFactory.create(), request);
+    assertEquals(1, filtered.getTestsFoundCount());
+    assertEquals(1, filtered.getTestsSucceededCount());
+
+    TestExecutionSummary conditional = execute(LauncherFactory.create(new ConfigWithoutFilters()), request);
+    assertEquals(2, conditional.getTestsFoundCount());
+    assertEquals(1, conditional.getTestsSucceededCount());
+    assertEquals(1, conditional.getTestsSkippedCount());
+  }
+
+  @Test
+  public void nestedClassesInheritTheTestGroup() {
+    LauncherDiscoveryRequest request = request().selectors(selectClass(DisabledOuterClass.class)).build();
+
+    TestExecutionSummary filtered = execute(LauncherFactory.create(), request);
+    assertEquals(0, filtered.getTestsFoundCount());
+
+    TestExecutionSummary conditional = execute(LauncherFactory.create(new ConfigWithoutFilters()), request);
+    assertEquals(0, conditional.getTestsStartedCount());
+    assertEquals(0, DisabledOuterClass.INSTANCES.get());
+  }
+
+  @Test
+  public void failFastIsAppliedWhenTheTestClassRuns() {
+    System.setProperty(GroupFailFast.FAILFAST_PROPERTY, "platform");
+    GroupFailFast.failed(EnabledClass.class);
+    Launcher launcher = LauncherFactory.create();
+    LauncherDiscoveryRequest request = request().selectors(selectClass(EnabledClass.class), selectClass(DisabledClass.class)).build();
+
+    TestPlan testPlan = launcher.discover(request);
+    assertEquals(1, testPlan.getChildren(testPlan.getRoots().iterator().next()).size());
+
+    TestExecutionSummary summary = execute(launcher, request);
+    assertEquals(0, summary.getTestsSucceededCount());
+    assertEquals(1, summary.getContainersSkippedCount());
+    assertEquals(0, EnabledClass.INSTANCES.get());
+  }
+
+  private static TestExecutionSummary execute(Launcher launcher, LauncherDiscoveryRequest request) {
+    SummaryGeneratingListener listener = new SummaryGeneratingListener();
+    launcher.execute(request, listener);
+
+    return listener.getSummary();
+  }
+
+  @TestGroup("platform")
+  @ExtendWith(TestGroupCondition.class)
+  public static class EnabledClass {
+
+    static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    public EnabledClass() {
+      INSTANCES.incrementAndGet();
+    }
+
+    @org.junit.jupiter.api.Test
+    public void test() {}
+
+    @org.junit.jupiter.api.Test
+    @TestGroup("slow")
+    public void slowTest() {}
+  }
+
+  @TestGroup("disabled")
+  @ExtendWith(TestGroupCondition.class)
+  public static class DisabledClass {
+
+    static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    public DisabledClass() {
+      INSTANCES.incrementAndGet();
+    }
+
+    @org.junit.jupiter.api.Test
+    public void test() {}
+  }
+
+  @TestGroup("disabled")
+  @ExtendWith(TestGroupCondition.class)
+  public static class DisabledOuterClass {
+
+    static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    public DisabledOuterClass() {
+      INSTANCES.incrementAndGet();
+    }
+
+    @org.junit.jupiter.api.Test
+    public void outer() {}
+
+    @Nested
+    public class Inner {
+
+      @org.junit.jupiter.api.Test
+      public void inner() {}
+    }
+  }
+
+  /**
+   * Launcher configuration without the automatically registered {@link TestGroupPostDiscoveryFilter}.
+   */
+  static class ConfigWithoutFilters implements LauncherConfig {
+
+    @Override
+    public boolean isTestEngineAutoRegistrationEnabled() {
+      return true;
+    }
+
+    @Override
+    public boolean isTestExecutionListenerAutoRegistrationEnabled() {
+      return false;
+    }
+
+    @Override
+    public boolean isPostDiscoveryFilterAutoRegistrationEnabled() {
+      return false;
+    }
+
+    @Override
+    public Collection<TestEngine> getAdditionalTestEngines() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Collection<TestExecutionListener> getAdditionalTestExecutionListeners() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Collection<PostDiscoveryFilter> getAdditionalPostDiscoveryFilters() {
+      return Collections.emptyList();
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Result;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+/**
+ * Tests for the {@link ClassPreloader}.
+ */
+public class PreloadIntegrationTest {
+
+  /** Test class name to the name of the thread that initialized the test class. */
+  static final Map<String, String> INITIALIZED = new ConcurrentHashMap<>();
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Before
+  public void before() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "preload");
+    System.setProperty(ClassPreloader.PRELOAD_PROPERTY, "2");
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+    System.clearProperty(ClassPreloader.PRELOAD_PROPERTY);
+    System.clearProperty(Shard.SHARD_PROPERTY);
+    System.clearProperty(Shard.DURATIONS_PROPERTY);
+  }
+
+  @Test
+  public void nextEnabledClassesAreInitializedInTheBackground() {
+    Result result = JUnitCore.runClasses(new TestGroupComputer(), Preload1.class, Preload2.class, Disabled.class, Preload3.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(3, result.getRunCount());
+    assertEquals("testgroup-preload", INITIALIZED.get(Preload2.class.getName()));
+    assertEquals("testgroup-preload", INITIALIZED.get(Preload3.class.getName()));
+    assertFalse(INITIALIZED.containsKey(Disabled.class.getName()));
+  }
+
+  @Test
+  public void classesOfOtherShardsAreNotInitialized() throws IOException {
+    // OtherShard -> 1, Preload1 -> 2, Preload2 -> 2
+    Properties durations = new Properties();
+    durations.setProperty(OtherShard.class.getName(), "40");
+    durations.setProperty(Preload1.class.getName(), "30");
+    durations.setProperty(Preload2.class.getName(), "5");
+    File file = this.tempFolder.newFile("durations.properties");
+    try (OutputStream os = new FileOutputStream(file)) {
+      durations.store(os, null);
+    }
+    System.setProperty(Shard.SHARD_PROPERTY, "2/2");
+    System.setProperty(Shard.DURATIONS_PROPERTY, file.getPath());
+
+    Result result = JUnitCore.runClasses(new TestGroupComputer(), Preload1.class, OtherShard.class, Preload2.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(2, result.getRunCount());
+    assertFalse(INITIALIZED.containsKey(OtherShard.class.getName()));
+  }
+
+  @Test
+  public void failedInitializationIsReported() {
+    Result result = JUnitCore.runClasses(new TestGroupComputer(), Preload1.class, BrokenInitializer.class);
+
+    assertEquals(1, result.getFailureCount());
+    assertEquals(ExceptionInInitializerError.class, result.getFailures().get(0).getException().getClass());
+    assertThat(result.getFailures().get(0).getException().getCause().getMessage(), containsString("broken initializer"));
+  }
+
+  static void initialized(Class<?> testClass) {
+    INITIALIZED.put(testClass.getName(), Thread.currentThread().getName());
+  }
+
+  @TestGroup("preload")
+  public static class Preload1 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    static {
+      initialized(Preload1.class);
+    }
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("preload")
+  public static class Preload2 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    static {
+      initialized(Preload2.class);
+    }
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("preload")
+  public static class Preload3 {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    static {
+      initialized(Preload3.class);
+    }
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("preload")
+  public static class OtherShard {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    static {
+      initialized(OtherShard.class);
+    }
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("other")
+  public static class Disabled {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    static {
+      initialized(Disabled.class);
+    }
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("preload")
+  public static class BrokenInitializer {
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    static {
+      if (Boolean.TRUE) {
+        throw new IllegalStateException("broken initializer");
+      }
+    }
+
+    @Test
+    public void test() {}
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.RunListener;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link TestGroupRunnerBuilder}, {@link TestGroupComputer} and {@link TestGroupFilter}.
+ */
+public class RunnerBuilderIntegrationTest {
+
+  private static final String USER_DEFINED_GROUP = "myGroup";
+  static final AtomicInteger PARAMETER_INVOCATIONS = new AtomicInteger();
+
+  @Before
+  public void before() {
+    PARAMETER_INVOCATIONS.set(0);
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+  }
+
+  @Test
+  public void disabledGroupDoesNotBuildRunner() {
+    Result result = JUnitCore.runClasses(new TestGroupComputer(), ParameterizedGroup.class);
+
+    assertEquals(0, result.getRunCount());
+    assertEquals(0, result.getFailureCount());
+    assertEquals(0, PARAMETER_INVOCATIONS.get());
+  }
+
+  @Test
+  public void disabledGroupIsReportedAsIgnored() {
+    final List<Description> ignored = new ArrayList<>();
+    JUnitCore core = new JUnitCore();
+    core.addListener(new RunListener() {
+
+      @Override
+      public void testIgnored(Description description) {
+        ignored.add(description);
+      }
+    });
+
+    Result result = core.run(new TestGroupComputer(), UserDefinedGroup.class);
+
+    assertEquals(1, result.getIgnoreCount());
+    assertEquals(UserDefinedGroup.class, ignored.get(0).getTestClass());
+    assertThat(ignored.get(0).getAnnotation(Ignore.class).value(), containsString(USER_DEFINED_GROUP));
+  }
+
+  @Test
+  public void enabledGroupBuildsRunner() {
+    System.setProperty(TestGroup.DEFAULT_KEY, USER_DEFINED_GROUP);
+
+    Result result = JUnitCore.runClasses(new TestGroupComputer(), ParameterizedGroup.class);
+
+    assertEquals(2, result.getRunCount());
+    assertEquals(1, PARAMETER_INVOCATIONS.get());
+  }
+
+  @Test
+  public void classWithoutTestGroup() {
+    Result result = JUnitCore.runClasses(new TestGroupComputer(), WithoutTestGroup.class);
+
+    assertEquals(1, result.getRunCount());
+  }
+
+  @Test
+  public void filterDisabledGroup() {
+    Result result = new JUnitCore().run(Request.classes(UserDefinedGroup.class, WithoutTestGroup.class)
+        .filterWith(new TestGroupFilter()));
+
+    assertEquals(1, result.getRunCount());
+    assertEquals(0, result.getFailureCount());
+  }
+
+  @Test
+  public void filterEnabledGroup() {
+    System.setProperty(TestGroup.DEFAULT_KEY, USER_DEFINED_GROUP);
+
+    Result result = new JUnitCore().run(Request.classes(UserDefinedGroup.class, WithoutTestGroup.class)
+        .filterWith(new TestGroupFilter()));
+
+    assertEquals(2, result.getRunCount());
+  }
+
+  /**
+   * Parameterized test in a user-defined test group. It does not need a {@link TestGroupRule}.
+   */
+  @RunWith(Parameterized.class)
+  @TestGroup(USER_DEFINED_GROUP)
+  public static class ParameterizedGroup {
+
+    private final int value;
+
+    public ParameterizedGroup(int value) {
+      this.value = value;
+    }
+
+    @Parameters
+    public static Collection<Object[]> parameters() {
+      PARAMETER_INVOCATIONS.incrementAndGet();
+      return Arrays.asList(new Object[]{1}, new Object[]{2});
+    }
+
+    @Test
+    public void test() {
+      assertEquals(this.value, this.value);
+    }
+  }
+
+  @TestGroup(USER_DEFINED_GROUP)
+  public static class UserDefinedGroup {
+
+    @Test
+    public void test() {}
+  }
+
+  public static class WithoutTestGroup {
+
+    @Test
+    public void test() {}
+  }
+}
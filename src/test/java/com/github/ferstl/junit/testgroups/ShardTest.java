@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link Shard}.
+ */
+public class ShardTest {
+
+  @Rule
+  public ExpectedException expEx = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void after() {
+    System.clearProperty(Shard.SHARD_PROPERTY);
+    System.clearProperty(Shard.DURATIONS_PROPERTY);
+  }
+
+  @Test
+  public void noShard() {
+    assertTrue(Shard.current().contains("a.B"));
+  }
+
+  @Test
+  public void currentShard() {
+    System.setProperty(Shard.SHARD_PROPERTY, "2/3");
+
+    assertEquals("2/3", Shard.current().toString());
+  }
+
+  @Test
+  public void eachClassInExactlyOneShard() {
+    int[] counts = new int[4];
+    for (int i = 0; i < 1000; i++) {
+      String className = "com.example.Test" + i;
+      int matches = 0;
+      for (int shard = 1; shard <= 4; shard++) {
+        if (Shard.create(shard + "/4", null).contains(className)) {
+          matches++;
+          counts[shard - 1]++;
+        }
+      }
+      assertEquals(1, matches);
+    }
+
+    for (int count : counts) {
+      assertTrue("Unbalanced shards: " + count, count > 150);
+    }
+  }
+
+  @Test
+  public void longestFirstWithDurations() throws IOException {
+    Properties durations = new Properties();
+    durations.setProperty("a.Long", "100");
+    durations.setProperty("a.Medium1", "60");
+    durations.setProperty("a.Medium2", "50");
+    durations.setProperty("a.Short", "10");
+    File file = this.tempFolder.newFile("durations.properties");
+    try (OutputStream os = new FileOutputStream(file)) {
+      durations.store(os, null);
+    }
+
+    Shard shard1 = Shard.create("1/2", file.getPath());
+    Shard shard2 = Shard.create("2/2", file.getPath());
+
+    // Long -> 1, Medium1 -> 2, Medium2 -> 2, Short -> 1
+    assertTrue(shard1.contains("a.Long"));
+    assertTrue(shard1.contains("a.Short"));
+    assertTrue(shard2.contains("a.Medium1"));
+    assertTrue(shard2.contains("a.Medium2"));
+    assertFalse(shard2.contains("a.Long"));
+  }
+
+  @Test
+  public void currentShardWithChangedDurationsFile() throws IOException {
+    System.setProperty(Shard.SHARD_PROPERTY, "1/2");
+    System.setProperty(Shard.DURATIONS_PROPERTY, writeDurations("first.properties", "a.First", "a.Second").getPath());
+    assertTrue(Shard.current().contains("a.First"));
+
+    System.setProperty(Shard.DURATIONS_PROPERTY, writeDurations("second.properties", "a.Second", "a.First").getPath());
+    assertTrue(Shard.current().contains("a.Second"));
+    assertFalse(Shard.current().contains("a.First"));
+  }
+
+  @Test
+  public void missingDurationsFile() {
+    Shard shard = Shard.create("1/1", new File(this.tempFolder.getRoot(), "missing").getPath());
+
+    assertTrue(shard.contains("a.B"));
+  }
+
+  @Test
+  public void invalidShard() {
+    this.expEx.expect(IllegalArgumentException.class);
+    this.expEx.expectMessage("Invalid shard '9/8'");
+
+    Shard.create("9/8", null);
+  }
+
+  @Test
+  public void invalidFormat() {
+    this.expEx.expect(IllegalArgumentException.class);
+
+    Shard.create("three", null);
+  }
+
+  private File writeDurations(String fileName, String longClass, String shortClass) throws IOException {
+    Properties durations = new Properties();
+    durations.setProperty(longClass, "100");
+    durations.setProperty(shortClass, "10");
+    File file = this.tempFolder.newFile(fileName);
+    try (OutputStream os = new FileOutputStream(file)) {
+      durations.store(os, null);
+    }
+
+    return file;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Computer;
+import org.junit.runner.Description;
+import org.junit.runner.Request;
+import org.junit.runner.manipulation.Sorter;
+import com.github.ferstl.junit.testgroups.Timing.Kind;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link TestGroupSorter}.
+ */
+public class SorterIntegrationTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Before
+  public void before() throws IOException {
+    File history = new File(this.tempFolder.getRoot(), "history.bin");
+    new TimingStore(history, 1).append(Arrays.asList(
+        new Timing(Kind.CLASS, ShortClass.class.getName(), 1, 10, 0, 0, false),
+        new Timing(Kind.CLASS, LongClass.class.getName(), 1, 1000, 0, 0, false),
+        new Timing(Kind.CLASS, FailedClass.class.getName(), 1, 100, 0, 0, true),
+        new Timing(Kind.CLASS, SkippedClass.class.getName(), 1, 10000, 0, 0, true)));
+    System.setProperty(TimingStore.HISTORY_PROPERTY, history.getPath());
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TimingStore.HISTORY_PROPERTY);
+    System.clearProperty(TestGroupSorter.ORDER_PROPERTY);
+  }
+
+  @Test
+  public void longestFirst() {
+    List<String> order = order(TestGroupSorter.longestFirst(), SkippedClass.class, UnknownClass.class, ShortClass.class, FailedClass.class, LongClass.class);
+
+    assertThat(order, contains("LongClass", "FailedClass", "ShortClass", "UnknownClass", "SkippedClass"));
+  }
+
+  @Test
+  public void recentlyFailedFirst() {
+    List<String> order = order(TestGroupSorter.recentlyFailedFirst(), SkippedClass.class, UnknownClass.class, LongClass.class, ShortClass.class, FailedClass.class);
+
+    assertThat(order, contains("FailedClass", "ShortClass", "LongClass", "UnknownClass", "SkippedClass"));
+  }
+
+  @Test
+  public void descriptionsWithoutTestClassLast() {
+    List<Description> descriptions = new ArrayList<>(Arrays.asList(
+        Description.createSuiteDescription("NoClass"),
+        Description.createSuiteDescription(ShortClass.class),
+        Description.createSuiteDescription(LongClass.class)));
+
+    Collections.sort(descriptions, TestGroupSorter.longestFirst());
+
+    assertThat(descriptions, contains(
+        Description.createSuiteDescription(LongClass.class),
+        Description.createSuiteDescription(ShortClass.class),
+        Description.createSuiteDescription("NoClass")));
+  }
+
+  @Test
+  public void computerWithOrder() {
+    System.setProperty(TestGroupSorter.ORDER_PROPERTY, "longest");
+
+    List<String> order = order(new TestGroupComputer(), SkippedClass.class, ShortClass.class, LongClass.class);
+
+    assertThat(order, contains("LongClass", "ShortClass", "SkippedClass"));
+  }
+
+  private static List<String> order(Sorter sorter, Class<?>... classes) {
+    return names(Request.classes(classes).sortWith(sorter).getRunner().getDescription());
+  }
+
+  private static List<String> order(Computer computer, Class<?>... classes) {
+    return names(Request.classes(computer, classes).getRunner().getDescription());
+  }
+
+  private static List<String> names(Description suite) {
+    List<String> names = new ArrayList<>();
+    for (Description child : suite.getChildren()) {
+      names.add(child.getTestClass().getSimpleName());
+    }
+
+    return names;
+  }
+
+  public static class ShortClass {
+    @Test
+    public void test() {}
+  }
+
+  public static class LongClass {
+    @Test
+    public void test() {}
+  }
+
+  public static class FailedClass {
+    @Test
+    public void test() {}
+  }
+
+  public static class UnknownClass {
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("disabled")
+  public static class SkippedClass {
+    @Test
+    public void test() {}
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Test;
+import com.github.ferstl.junit.testgroups.packagetest.PackageTest;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link TestGroupCache}.
+ */
+public class TestGroupCacheTest {
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+  }
+
+  @Test
+  public void classTestGroup() {
+    TestGroup testGroup = TestGroupCache.testGroup(Annotated.class);
+
+    assertArrayEquals(new String[]{"group1", "group2"}, testGroup.value());
+    assertThat(TestGroupCache.testGroup(Annotated.class), sameInstance(testGroup));
+  }
+
+  @Test
+  public void packageTestGroup() {
+    TestGroup testGroup = TestGroupCache.testGroup(PackageTest.class);
+
+    assertEquals(PackageTest.TEST_GROUP_KEY, testGroup.key());
+  }
+
+  @Test
+  public void packageTestGroupPerClassLoader() throws Exception {
+    assertNotNull(TestGroupCache.testGroup(PackageTest.class));
+
+    // Same package, but the package-info class is not visible to this class loader.
+    Class<?> isolated = new IsolatingClassLoader(PackageTest.class).loadClass(PackageTest.class.getName());
+
+    assertNotSame(PackageTest.class, isolated);
+    assertNull(TestGroupCache.testGroup(isolated));
+  }
+
+  @Test
+  public void noTestGroup() {
+    assertNull(TestGroupCache.testGroup(TestGroupCacheTest.class));
+  }
+
+  @Test
+  public void enabledGroupsAreReusedUntilChanged() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "a,b");
+    Collection<String> first = TestGroupCache.enabledTestGroups(TestGroup.DEFAULT_KEY);
+
+    assertThat(first, containsInAnyOrder("a", "b"));
+    assertThat(TestGroupCache.enabledTestGroups(TestGroup.DEFAULT_KEY), sameInstance(first));
+
+    System.setProperty(TestGroup.DEFAULT_KEY, "c");
+    assertThat(TestGroupCache.enabledTestGroups(TestGroup.DEFAULT_KEY), containsInAnyOrder("c"));
+  }
+
+  @Test
+  public void decisionFollowsSystemProperty() {
+    TestGroup testGroup = TestGroupCache.testGroup(Annotated.class);
+
+    assertNotNull(TestGroupCache.check(testGroup));
+
+    System.setProperty(TestGroup.DEFAULT_KEY, "group2");
+    assertNull(TestGroupCache.check(testGroup));
+  }
+
+  @Test
+  public void concurrentChecks() throws Exception {
+    final TestGroup testGroup = TestGroupCache.testGroup(Annotated.class);
+    System.setProperty(TestGroup.DEFAULT_KEY, "other");
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<SkipReason>> results = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        results.add(executor.submit(new Callable<SkipReason>() {
+
+          @Override
+          public SkipReason call() {
+            return TestGroupCache.check(testGroup);
+          }
+        }));
+      }
+
+      for (Future<SkipReason> result : results) {
+        assertThat(result.get().getReason(), containsString("other"));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @TestGroup({"group1", "group2"})
+  static class Annotated {}
+
+  /**
+   * Defines its own copy of the given class and hides the package-info class of its package.
+   */
+  static class IsolatingClassLoader extends ClassLoader {
+
+    private final Class<?> isolated;
+
+    IsolatingClassLoader(Class<?> isolated) {
+      super(isolated.getClassLoader());
+      this.isolated = isolated;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (name.equals(this.isolated.getPackage().getName() + ".package-info")) {
+        throw new ClassNotFoundException(name);
+      } else if (!name.equals(this.isolated.getName())) {
+        return super.loadClass(name, resolve);
+      }
+
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> loaded = findLoadedClass(name);
+        if (loaded != null) {
+          return loaded;
+        }
+
+        try (InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          byte[] buffer = new byte[4096];
+          for (int read = is.read(buffer); read >= 0; read = is.read(buffer)) {
+            bytes.write(buffer, 0, read);
+          }
+
+          return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+        } catch (IOException e) {
+          throw new ClassNotFoundException(name, e);
+        }
+      }
+    }
+  }
+}
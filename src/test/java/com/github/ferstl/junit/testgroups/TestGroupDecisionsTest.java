@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.util.Collection;
+import org.junit.Test;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+
+/**
+ * JUnit tests for {@link TestGroupDecisions}.
+ */
+public class TestGroupDecisionsTest {
+
+  @Test
+  public void splitMultiple() {
+    Collection<String> values = TestGroupDecisions.split("a,b,c");
+
+    assertThat(values, containsInAnyOrder("a", "b", "c"));
+  }
+
+  @Test
+  public void splitWithEmptyGroups() {
+    Collection<String> values = TestGroupDecisions.split("a,,b,c");
+
+    assertThat(values, containsInAnyOrder("a", "b", "c"));
+  }
+
+  @Test
+  public void splitSingle() {
+    Collection<String> values = TestGroupDecisions.split("a");
+
+    assertThat(values, contains("a"));
+  }
+
+  @Test
+  public void splitEmpty() {
+    Collection<String> values = TestGroupDecisions.split("");
+
+    assertThat(values, empty());
+  }
+
+  @Test
+  public void splitNull() {
+    Collection<String> values = TestGroupDecisions.split(null);
+
+    assertThat(values, empty());
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import com.github.ferstl.junit.testgroups.IntegrationTest.SubClass;
+import com.github.ferstl.junit.testgroups.IntegrationTest.UserDefinedKey;
+import com.github.ferstl.junit.testgroups.packagetest.PackageTest;
+import com.github.ferstl.junit.testgroups.packagetest.subpackage.SubPackageTest;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TestGroupIndex} using the index that {@link TestGroupProcessor} generates for the test classes.
+ */
+public class TestGroupIndexTest {
+
+  private TestGroupIndex index;
+
+  @Before
+  public void before() throws IOException {
+    this.index = TestGroupIndex.load(getClass().getClassLoader());
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+  }
+
+  @Test
+  public void inheritedTestGroup() {
+    assertThat(this.index.getDeclaredGroups(SubClass.class.getName()), contains("myGroup"));
+    assertEquals(TestGroup.DEFAULT_KEY, this.index.getKey(SubClass.class.getName()));
+  }
+
+  @Test
+  public void userDefinedKey() {
+    assertEquals("myKey", this.index.getKey(UserDefinedKey.class.getName()));
+  }
+
+  @Test
+  public void packageTestGroup() {
+    assertThat(this.index.getDeclaredGroups(PackageTest.class.getName()), contains(PackageTest.TEST_GROUP_NAME));
+    assertEquals(PackageTest.TEST_GROUP_KEY, this.index.getKey(PackageTest.class.getName()));
+  }
+
+  @Test
+  public void subPackageTestGroup() {
+    assertThat(this.index.getDeclaredGroups(SubPackageTest.class.getName()), contains(PackageTest.TEST_GROUP_NAME));
+    assertEquals(PackageTest.TEST_GROUP_KEY, this.index.getKey(SubPackageTest.class.getName()));
+  }
+
+  @Test
+  public void noTestGroup() {
+    String className = RunnerBuilderIntegrationTest.WithoutTestGroup.class.getName();
+
+    assertFalse(this.index.contains(className));
+    assertThat(this.index.getDeclaredGroups(className), empty());
+    assertTrue(this.index.isEnabled(className));
+  }
+
+  @Test
+  public void isEnabled() {
+    assertFalse(this.index.isEnabled(SubClass.class.getName()));
+
+    System.setProperty(TestGroup.DEFAULT_KEY, "myGroup");
+    assertTrue(this.index.isEnabled(SubClass.class.getName()));
+  }
+
+  @Test
+  public void writeAndRead() throws IOException {
+    TestGroupIndex written = new TestGroupIndex();
+    written.add("a.B", "key", Arrays.asList("group1", "group2"));
+    written.add("a.C", "key", Arrays.<String>asList());
+    StringWriter writer = new StringWriter();
+    written.write(writer);
+
+    TestGroupIndex read = new TestGroupIndex();
+    read.read(new StringReader(writer.toString()));
+
+    assertThat(read.getClassNames(), contains("a.B", "a.C"));
+    assertThat(read.getDeclaredGroups("a.B"), contains("group1", "group2"));
+    assertThat(read.getDeclaredGroups("a.C"), empty());
+  }
+}
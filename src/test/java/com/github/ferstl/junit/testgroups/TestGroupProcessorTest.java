@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link TestGroupProcessor}.
+ */
+public class TestGroupProcessorTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File sources;
+  private File classes;
+
+  @Before
+  public void before() throws IOException {
+    this.sources = this.tempFolder.newFolder("sources");
+    this.classes = this.tempFolder.newFolder("classes");
+  }
+
+  @Test
+  public void incrementalCompilationMergesTheIndex() throws Exception {
+    compile(source("A", "@TestGroup(\"a\")"), source("B", "@TestGroup(\"b\")"));
+    compile(source("B", ""), source("C", "@TestGroup(\"c\")"));
+
+    TestGroupIndex index = readIndex();
+    assertThat(index.getClassNames(), contains("p.A", "p.C"));
+    assertThat(index.getDeclaredGroups("p.A"), contains("a"));
+  }
+
+  private File source(String className, String annotation) throws IOException {
+    File source = new File(this.sources, className + ".java");
+    String content = "package p;\n"
+        + "import com.github.ferstl.junit.testgroups.TestGroup;\n"
+        + annotation + "\n"
+        + "public class " + className + " {}\n";
+    Files.write(source.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+    return source;
+  }
+
+  private void compile(File... sources) throws IOException, URISyntaxException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+      File library = new File(TestGroup.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+      fileManager.setLocation(StandardLocation.CLASS_PATH, Arrays.asList(this.classes, library));
+      fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(this.classes));
+      Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(sources);
+
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, Arrays.asList("-proc:only"), null, units);
+      task.setProcessors(Collections.singletonList(new TestGroupProcessor()));
+      assertTrue(task.call());
+    }
+  }
+
+  private TestGroupIndex readIndex() throws IOException {
+    TestGroupIndex index = new TestGroupIndex();
+    try (Reader reader = new InputStreamReader(new FileInputStream(new File(this.classes, TestGroupIndex.LOCATION)), StandardCharsets.UTF_8)) {
+      index.read(reader);
+    }
+
+    return index;
+  }
+}
@@ -22,9 +22,6 @@
 package com.github.ferstl.junit.testgroups;
 
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -34,15 +31,11 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.Description;
 import org.junit.runners.model.Statement;
 import com.github.ferstl.junit.testgroups.TestGroupRule.SkipStatement;
-import static org.hamcrest.Matchers.contains;
-import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
-import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -120,38 +113,6 @@ public class TestGroupRuleTest {
     assertThat(this.rule.apply(this.statement, this.description), instanceOf(SkipStatement.class));
   }
 
-  @Test
-  public void groupEnablementAllGroups() {
-    List<String> declaredGroups = Arrays.asList("declaredGroup1", "declaredGroup2");
-    List<String> enabledGroups = Collections.singletonList(TestGroup.ALL_GROUPS);
-
-    assertTrue(TestGroupRule.isGroupEnabled(enabledGroups, declaredGroups));
-  }
-
-  @Test
-  public void groupEnablementDefault() {
-    List<String> declaredGroups = Collections.emptyList();
-    List<String> enabledGroups = Collections.emptyList();
-
-    assertTrue(TestGroupRule.isGroupEnabled(enabledGroups, declaredGroups));
-  }
-
-  @Test
-  public void groupEnablementDeclaredAndEnabled() {
-    List<String> declaredGroups = Arrays.asList("group1", "group2");
-    List<String> enabledGroups = Arrays.asList("group2", "group3");
-
-    assertTrue(TestGroupRule.isGroupEnabled(enabledGroups, declaredGroups));
-  }
-
-  @Test
-  public void groupEnablementDeclaredAndNotEnabled() {
-    List<String> declaredGroups = Arrays.asList("group1", "group2");
-    List<String> enabledGroups = Arrays.asList("group3", "group4");
-
-    assertFalse(TestGroupRule.isGroupEnabled(enabledGroups, declaredGroups));
-  }
-
   @Test
   public void skipStatement() throws Throwable {
     SkipStatement skipStatement = new SkipStatement(Arrays.asList("foo", "bar"), Arrays.asList("baz", "blub"));
@@ -166,38 +127,16 @@ public class TestGroupRuleTest {
   }
 
   @Test
-  public void splitMultiple() {
-    Collection<String> values = TestGroupRule.split("a,b,c");
-
-    assertThat(values, containsInAnyOrder("a", "b", "c"));
-  }
-
-  @Test
-  public void splitWithEmptyGroups() {
-    Collection<String> values = TestGroupRule.split("a,,b,c");
-
-    assertThat(values, containsInAnyOrder("a", "b", "c"));
-  }
-
-  @Test
-  public void splitSingle() {
-    Collection<String> values = TestGroupRule.split("a");
-
-    assertThat(values, contains("a"));
-  }
-
-  @Test
-  public void splitEmpty() {
-    Collection<String> values = TestGroupRule.split("");
-
-    assertThat(values, empty());
-  }
-
-  @Test
-  public void splitNull() {
-    Collection<String> values = TestGroupRule.split(null);
+  public void skipStatementWithoutStackTrace() throws Throwable {
+    SkipStatement skipStatement = new SkipStatement("Test class ", "a.B", " is skipped");
 
-    assertThat(values, empty());
+    try {
+      skipStatement.evaluate();
+      fail("Expected an AssumptionViolatedException");
+    } catch (AssumptionViolatedException e) {
+      assertEquals("Test class a.B is skipped", e.getMessage());
+      assertEquals(0, e.getStackTrace().length);
+    }
   }
 
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.HashSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.github.ferstl.junit.testgroups.IntegrationTest.SubClass;
+import com.github.ferstl.junit.testgroups.packagetest.PackageTest;
+import com.github.ferstl.junit.testgroups.packagetest.subpackage.SubPackageTest;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link TestGroupScanner}.
+ */
+public class TestGroupScannerTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void sameResultAsAnnotationProcessor() throws Exception {
+    TestGroupIndex processorIndex = TestGroupIndex.load(getClass().getClassLoader());
+    TestGroupIndex scannerIndex = new TestGroupScanner(getClass().getClassLoader()).scan(testClassesDirectory());
+
+    assertEquals(processorIndex.getClassNames(), scannerIndex.getClassNames());
+    for (String className : processorIndex.getClassNames()) {
+      assertEquals(className, processorIndex.getKey(className), scannerIndex.getKey(className));
+      assertEquals(className, new HashSet<>(processorIndex.getDeclaredGroups(className)), new HashSet<>(scannerIndex.getDeclaredGroups(className)));
+    }
+  }
+
+  @Test
+  public void scanJar() throws Exception {
+    File jar = this.tempFolder.newFile("test.jar");
+    try (ZipOutputStream os = new ZipOutputStream(new FileOutputStream(jar))) {
+      addClass(os, PackageTest.class.getName());
+      addClass(os, PackageTest.class.getPackage().getName() + ".package-info");
+      addClass(os, SubPackageTest.class.getName());
+      addClass(os, SubClass.class.getName());
+      addClass(os, IntegrationTest.BaseClass.class.getName());
+    }
+
+    TestGroupIndex index = new TestGroupScanner(null).scan(jar);
+
+    assertThat(index.getClassNames(), contains(IntegrationTest.BaseClass.class.getName(), SubClass.class.getName(), PackageTest.class.getName(), SubPackageTest.class.getName()));
+    assertEquals(PackageTest.TEST_GROUP_KEY, index.getKey(PackageTest.class.getName()));
+    assertThat(index.getDeclaredGroups(SubClass.class.getName()), contains("myGroup"));
+    assertEquals(PackageTest.TEST_GROUP_KEY, index.getKey(SubPackageTest.class.getName()));
+  }
+
+  @Test
+  public void superclassOutsideOfScannedRoots() throws Exception {
+    File jar = this.tempFolder.newFile("test.jar");
+    try (ZipOutputStream os = new ZipOutputStream(new FileOutputStream(jar))) {
+      addClass(os, SubClass.class.getName());
+    }
+
+    TestGroupIndex index = new TestGroupScanner(getClass().getClassLoader()).scan(jar);
+
+    assertThat(index.getDeclaredGroups(SubClass.class.getName()), contains("myGroup"));
+  }
+
+  private static File testClassesDirectory() throws URISyntaxException {
+    return new File(TestGroupScannerTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  private static void addClass(ZipOutputStream os, String className) throws IOException {
+    String resource = className.replace('.', '/') + ".class";
+    os.putNextEntry(new ZipEntry(resource));
+    try (InputStream is = TestGroupScannerTest.class.getClassLoader().getResourceAsStream(resource)) {
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = is.read(buffer)) >= 0) {
+        os.write(buffer, 0, read);
+      }
+    }
+    os.closeEntry();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.manipulation.Filter;
+import com.github.ferstl.junit.testgroups.suitetest.EnabledFixture;
+import com.github.ferstl.junit.testgroups.suitetest.FirstSuiteFixture;
+import com.github.ferstl.junit.testgroups.suitetest.Initialized;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link TestGroupSuite}.
+ */
+public class TestGroupSuiteIntegrationTest {
+
+  @Before
+  public void before() {
+    Initialized.CLASSES.clear();
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+    System.clearProperty(ClassPreloader.PRELOAD_PROPERTY);
+  }
+
+  @Test
+  public void enabledTestClassesOnly() throws Exception {
+    System.setProperty(TestGroup.DEFAULT_KEY, "suite");
+
+    Result result = JUnitCore.runClasses(Suite.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(2, result.getRunCount());
+    assertFalse(Initialized.CLASSES.contains("DisabledFixture"));
+  }
+
+  @Test
+  public void descriptionContainsEnabledTestClasses() throws Exception {
+    System.setProperty(TestGroup.DEFAULT_KEY, "suite");
+
+    Description description = Request.aClass(Suite.class).getRunner().getDescription();
+
+    assertThat(description.getChildren(), contains(
+        Description.createSuiteDescription("com.github.ferstl.junit.testgroups.suitetest.EnabledFixture"),
+        Description.createSuiteDescription("com.github.ferstl.junit.testgroups.suitetest.UngroupedFixture")));
+    assertFalse(Initialized.CLASSES.contains("EnabledFixture"));
+  }
+
+  @Test
+  public void preloadEnabledTestClasses() {
+    System.setProperty(TestGroup.DEFAULT_KEY, "suite");
+    System.setProperty(ClassPreloader.PRELOAD_PROPERTY, "4");
+
+    Result result = JUnitCore.runClasses(Suite.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(2, result.getRunCount());
+    assertFalse(Initialized.CLASSES.contains("DisabledFixture"));
+  }
+
+  @Test
+  public void allGroups() {
+    System.setProperty(TestGroup.DEFAULT_KEY, TestGroup.ALL_GROUPS);
+
+    Result result = JUnitCore.runClasses(Suite.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(3, result.getRunCount());
+  }
+
+  @Test
+  public void suitesAreNoTestClasses() {
+    System.setProperty(TestGroup.DEFAULT_KEY, TestGroup.ALL_GROUPS);
+
+    // Both suites would find each other.
+    Result result = JUnitCore.runClasses(FirstSuiteFixture.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(3, result.getRunCount());
+  }
+
+  @Test
+  public void methodFilter() {
+    System.setProperty(TestGroup.DEFAULT_KEY, TestGroup.ALL_GROUPS);
+    Filter filter = Filter.matchMethodDescription(Description.createTestDescription(EnabledFixture.class, "test"));
+
+    Result result = new JUnitCore().run(Request.aClass(Suite.class).filterWith(filter));
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(1, result.getRunCount());
+  }
+
+  @RunWith(TestGroupSuite.class)
+  @TestGroupSuite.Scan(packages = "com.github.ferstl.junit.testgroups.suitetest", includes = ".*Fixture")
+  public static class Suite {}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import com.github.ferstl.junit.testgroups.Timing.Kind;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link TimingRecorder} and {@link TimingStore}.
+ */
+public class TimingRecorderTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private TimingStore store;
+
+  @Before
+  public void before() throws IOException {
+    this.store = new TimingStore(new File(this.tempFolder.getRoot(), "history/history.bin"), 0.5);
+    System.setProperty(TestGroup.DEFAULT_KEY, TestGroup.ALL_GROUPS);
+  }
+
+  @After
+  public void after() {
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+  }
+
+  @Test
+  public void recordClassesAndGroups() throws IOException {
+    JUnitCore core = new JUnitCore();
+    core.addListener(new TimingRecorder(this.store));
+    core.run(Slow.class, Failing.class);
+
+    Map<String, Timing> classes = this.store.load(Kind.CLASS);
+    assertThat(classes.get(Slow.class.getName()).getWallTime(), greaterThan(10_000_000L));
+    assertFalse(classes.get(Slow.class.getName()).isFailed());
+    assertTrue(classes.get(Failing.class.getName()).isFailed());
+    assertThat(classes.get(Failing.class.getName()).getLastFailure(), greaterThan(0L));
+
+    Map<String, Timing> groups = this.store.load(Kind.GROUP);
+    assertTrue(groups.get("slow").getWallTime() >= classes.get(Slow.class.getName()).getWallTime());
+    assertTrue(groups.get("timing").isFailed());
+  }
+
+  @Test
+  public void exponentialDecay() throws IOException {
+    this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", 1, 100, 10, 1000, true)));
+    this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", 2, 200, 20, 2000, false)));
+    this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", 3, 400, 40, 4000, false)));
+
+    Timing timing = this.store.load(Kind.CLASS).get("a.B");
+    // ((100 + 200) / 2 + 400) / 2
+    assertEquals(275, timing.getWallTime());
+    assertEquals(28, timing.getCpuTime());
+    assertEquals(2750, timing.getAllocatedBytes());
+    assertEquals(3, timing.getTimestamp());
+    assertFalse(timing.isFailed());
+    assertEquals(1, timing.getLastFailure());
+  }
+
+  @Test
+  public void compaction() throws IOException {
+    this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", 0, 100, 10, 1000, false)));
+    long blockSize = this.store.getFile().length();
+    for (int i = 1; i < 20; i++) {
+      this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", i, 100, 10, 1000, false)));
+    }
+
+    Timing timing = this.store.load(Kind.CLASS).get("a.B");
+    assertEquals(100, timing.getWallTime());
+    assertEquals(19, timing.getTimestamp());
+    assertThat(20 * blockSize, greaterThan(this.store.getFile().length()));
+  }
+
+  @Test
+  public void truncatedBlockIsIgnored() throws IOException {
+    this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", 1, 100, 10, 1000, false)));
+    long size = this.store.getFile().length();
+    this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", 2, 200, 20, 2000, false)));
+    try (RandomAccessFile file = new RandomAccessFile(this.store.getFile(), "rw")) {
+      file.setLength(size + 10);
+    }
+
+    assertEquals(100, this.store.load(Kind.CLASS).get("a.B").getWallTime());
+  }
+
+  @Test
+  public void appendAfterTruncatedBlock() throws IOException {
+    this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", 1, 100, 10, 1000, false)));
+    long size = this.store.getFile().length();
+    this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", 2, 200, 20, 2000, false)));
+    try (RandomAccessFile file = new RandomAccessFile(this.store.getFile(), "rw")) {
+      file.setLength(size + 10);
+    }
+
+    this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", 3, 300, 30, 3000, false)));
+
+    assertEquals(2 * size, this.store.getFile().length());
+    assertEquals(200, this.store.load(Kind.CLASS).get("a.B").getWallTime());
+  }
+
+  @Test
+  public void historyFileDetection() throws IOException {
+    this.store.append(Arrays.asList(new Timing(Kind.CLASS, "a.B", 1, 100, 10, 1000, false)));
+
+    assertTrue(TimingStore.isHistoryFile(this.store.getFile()));
+    assertFalse(TimingStore.isHistoryFile(this.tempFolder.newFile()));
+  }
+
+  @TestGroup({"slow", "timing"})
+  public static class Slow {
+
+    @Test
+    public void test() throws InterruptedException {
+      Thread.sleep(20);
+    }
+  }
+
+  @TestGroup("timing")
+  public static class Failing {
+
+    @Test
+    public void test() {
+      fail("boom");
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for test groups that run on {@link VirtualThreads}.
+ */
+public class VirtualThreadIntegrationTest {
+
+  static final AtomicInteger RUNNING = new AtomicInteger();
+  static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+  static volatile CountDownLatch latch;
+  static volatile String cpuThread;
+
+  private PrintStream originalErr;
+  private ByteArrayOutputStream err;
+
+  @Before
+  public void before() {
+    RUNNING.set(0);
+    MAX_RUNNING.set(0);
+    cpuThread = null;
+    System.setProperty(TestGroup.DEFAULT_KEY, TestGroup.ALL_GROUPS);
+    System.setProperty(GroupScheduler.PARALLELISM_PROPERTY, "1");
+    this.originalErr = System.err;
+    this.err = new ByteArrayOutputStream();
+    System.setErr(new PrintStream(this.err, true));
+  }
+
+  @After
+  public void after() {
+    System.setErr(this.originalErr);
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+    System.clearProperty(GroupScheduler.PARALLELISM_PROPERTY);
+    System.clearProperty(GroupScheduler.VIRTUAL_PROPERTY);
+    System.clearProperty(GroupScheduler.DIAGNOSTICS_PROPERTY);
+  }
+
+  @Test
+  public void unboundedVirtualGroup() {
+    System.setProperty(GroupScheduler.VIRTUAL_PROPERTY, "io:0");
+    latch = new CountDownLatch(4);
+
+    // All four test classes have to run at the same time although the pool has only one thread.
+    Result result = JUnitCore.runClasses(TestGroupComputer.parallel(), Io1.class, Io2.class, Io3.class, Io4.class);
+
+    assertEquals(4, result.getRunCount());
+    assertEquals(0, result.getFailureCount());
+  }
+
+  @Test
+  public void cappedVirtualGroup() {
+    System.setProperty(GroupScheduler.VIRTUAL_PROPERTY, "io:2");
+    latch = null;
+
+    Result result = JUnitCore.runClasses(TestGroupComputer.parallel(), Io1.class, Io2.class, Io3.class, Io4.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(2, MAX_RUNNING.get());
+  }
+
+  @Test
+  public void otherGroupsStayOnThePool() {
+    System.setProperty(GroupScheduler.VIRTUAL_PROPERTY, "io:0");
+    latch = null;
+
+    Result result = JUnitCore.runClasses(TestGroupComputer.parallel(), Cpu.class, Io1.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertThat(cpuThread, startsWith("ForkJoinPool"));
+  }
+
+  @Test
+  public void diagnostics() {
+    System.setProperty(GroupScheduler.VIRTUAL_PROPERTY, "io:0");
+    System.setProperty(GroupScheduler.DIAGNOSTICS_PROPERTY, "true");
+    latch = null;
+
+    JUnitCore.runClasses(TestGroupComputer.parallel(), Cpu.class, Io1.class);
+
+    String diagnostics = new String(this.err.toByteArray(), StandardCharsets.UTF_8);
+    assertThat(diagnostics, containsString(Io1.class.getName() + ": wall time "));
+    assertThat(diagnostics, containsString("pinned 0 times"));
+    assertFalse(diagnostics.contains(Cpu.class.getName()));
+  }
+
+  @Test
+  public void noDiagnosticsByDefault() {
+    System.setProperty(GroupScheduler.VIRTUAL_PROPERTY, "io:0");
+    latch = null;
+
+    JUnitCore.runClasses(TestGroupComputer.parallel(), Io1.class);
+
+    assertEquals("", new String(this.err.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  static void io() throws InterruptedException {
+    assertFalse(Thread.currentThread().getName().startsWith("ForkJoinPool"));
+    int running = RUNNING.incrementAndGet();
+    int max;
+    while ((max = MAX_RUNNING.get()) < running && !MAX_RUNNING.compareAndSet(max, running)) {
+      // Retry
+    }
+
+    CountDownLatch currentLatch = latch;
+    if (currentLatch != null) {
+      currentLatch.countDown();
+      assertTrue("Test classes did not run concurrently", currentLatch.await(5, TimeUnit.SECONDS));
+    } else {
+      Thread.sleep(100);
+    }
+    RUNNING.decrementAndGet();
+  }
+
+  @TestGroup("io")
+  public static class Io1 {
+
+    @Test
+    public void test() throws Exception {
+      io();
+    }
+  }
+
+  @TestGroup("io")
+  public static class Io2 {
+
+    @Test
+    public void test() throws Exception {
+      io();
+    }
+  }
+
+  @TestGroup("io")
+  public static class Io3 {
+
+    @Test
+    public void test() throws Exception {
+      io();
+    }
+  }
+
+  @TestGroup("io")
+  public static class Io4 {
+
+    @Test
+    public void test() throws Exception {
+      io();
+    }
+  }
+
+  @TestGroup("cpu")
+  public static class Cpu {
+
+    @Test
+    public void test() {
+      cpuThread = Thread.currentThread().getName();
+    }
+  }
+}
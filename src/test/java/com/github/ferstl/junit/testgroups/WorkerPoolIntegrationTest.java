@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2013 Stefan Ferstl <st.ferstl@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.ferstl.junit.testgroups;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link TestGroupWorkerPool}.
+ */
+public class WorkerPoolIntegrationTest {
+
+  private static final String PARENT_JVM_PROPERTY = "testgroup.test.parentJvm";
+  private static final String SETTING_PROPERTY = "testgroup.test.setting";
+
+  private static TestGroupWorkerPool pool;
+
+  /** JVM of the first test class in the test group "pool". Only set within the workers. */
+  static String affineWorker;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    System.setProperty(TestGroup.DEFAULT_KEY, "pool,other,crash");
+    System.setProperty(PARENT_JVM_PROPERTY, currentJvm());
+    pool = TestGroupWorkerPool.start(2);
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    pool.close();
+    System.clearProperty(TestGroup.DEFAULT_KEY);
+    System.clearProperty(PARENT_JVM_PROPERTY);
+  }
+
+  @Test
+  public void groupAffinity() {
+    Result result = pool.run(Affine1.class, Ungrouped.class, Affine2.class, Affine3.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(4, result.getRunCount());
+  }
+
+  @Test
+  public void failuresAreReported() {
+    Result result = pool.run(Failing.class, Ungrouped.class);
+
+    assertEquals(2, result.getRunCount());
+    assertEquals(1, result.getFailureCount());
+    Failure failure = result.getFailures().get(0);
+    assertEquals(Failing.class.getName(), failure.getDescription().getClassName());
+    assertEquals("test", failure.getDescription().getMethodName());
+    assertThat(failure.getMessage(), containsString("expected failure"));
+  }
+
+  @Test
+  public void disabledClassesAreNotDispatched() {
+    Result result = pool.run(Disabled.class, Ungrouped.class);
+
+    assertEquals(1, result.getRunCount());
+    assertEquals(1, result.getIgnoreCount());
+  }
+
+  @Test
+  public void workersRunInOtherJvms() {
+    Result result = pool.run(OtherJvm.class);
+
+    assertEquals(0, result.getFailureCount());
+    assertEquals(1, result.getRunCount());
+  }
+
+  @Test
+  public void settingsAreSentWithEachRun() {
+    try {
+      System.setProperty(SETTING_PROPERTY, "first");
+      assertEquals(0, pool.run(FirstSetting.class).getFailureCount());
+
+      System.setProperty(SETTING_PROPERTY, "second");
+      assertEquals(0, pool.run(SecondSetting.class).getFailureCount());
+    } finally {
+      System.clearProperty(SETTING_PROPERTY);
+    }
+  }
+
+  @Test
+  public void customKeysAreSentToTheWorkers() {
+    try {
+      System.setProperty(CustomKey.KEY, "custom");
+      Result result = pool.run(CustomKey.class);
+
+      assertEquals(1, result.getRunCount());
+      assertEquals(0, result.getIgnoreCount());
+    } finally {
+      System.clearProperty(CustomKey.KEY);
+    }
+  }
+
+  @Test
+  public void classesOfWorkersThatCannotBeReplacedRunOnOtherWorkers() {
+    String javaHome = System.getProperty("java.home");
+    Result result;
+    try {
+      // New workers cannot be started without java executable.
+      System.setProperty("java.home", new File(javaHome, "nonexistent").getPath());
+      result = pool.run(Crash.class, CrashGroup1.class, CrashGroup2.class);
+    } finally {
+      System.setProperty("java.home", javaHome);
+    }
+
+    assertEquals(1, result.getFailureCount());
+    assertEquals(Crash.class.getName(), result.getFailures().get(0).getDescription().getClassName());
+    assertEquals(2, result.getRunCount());
+
+    // The terminated worker is replaced in the next run.
+    assertEquals(0, pool.run(Affine1.class, Affine2.class).getFailureCount());
+  }
+
+  static String currentJvm() {
+    return ManagementFactory.getRuntimeMXBean().getName();
+  }
+
+  @TestGroup("pool")
+  public static class Affine1 {
+
+    @Test
+    public void test() {
+      affineWorker = currentJvm();
+    }
+  }
+
+  @TestGroup("pool")
+  public static class Affine2 {
+
+    @Test
+    public void test() {
+      System.out.println("Output of tests does not interfere with the workers");
+      assertEquals(currentJvm(), affineWorker);
+    }
+  }
+
+  @TestGroup({"pool", "other"})
+  public static class Affine3 {
+
+    @Test
+    public void test() {
+      assertEquals(currentJvm(), affineWorker);
+    }
+  }
+
+  public static class Ungrouped {
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("other")
+  public static class Failing {
+
+    @Test
+    public void test() {
+      throw new AssertionError("expected failure");
+    }
+  }
+
+  @TestGroup("crash")
+  public static class Crash {
+
+    @Test
+    public void test() {
+      if (!currentJvm().equals(System.getProperty(PARENT_JVM_PROPERTY))) {
+        Runtime.getRuntime().halt(1);
+      }
+    }
+  }
+
+  @TestGroup("crash")
+  public static class CrashGroup1 {
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("crash")
+  public static class CrashGroup2 {
+
+    @Test
+    public void test() {}
+  }
+
+  public static class FirstSetting {
+
+    @Test
+    public void test() {
+      assertEquals("first", System.getProperty(SETTING_PROPERTY));
+    }
+  }
+
+  public static class SecondSetting {
+
+    @Test
+    public void test() {
+      assertEquals("second", System.getProperty(SETTING_PROPERTY));
+    }
+  }
+
+  @TestGroup(key = CustomKey.KEY, value = "custom")
+  public static class CustomKey {
+
+    static final String KEY = "workerpool.groups";
+
+    @ClassRule
+    public static TestGroupRule rule = TestGroupRule.create();
+
+    @Test
+    public void test() {}
+  }
+
+  @TestGroup("disabled")
+  public static class Disabled {
+
+    @Test
+    public void test() {}
+  }
+
+  public static class OtherJvm {
+
+    @Test
+    public void test() {
+      assertNotNull(System.getProperty(PARENT_JVM_PROPERTY));
+      assertNotEquals(System.getProperty(PARENT_JVM_PROPERTY), currentJvm());
+    }
+  }
+}
@@ -21,10 +21,15 @@
  */
 package com.github.ferstl.junit.testgroups.packagetest.subpackage;
 
+import org.junit.ClassRule;
 import org.junit.Test;
+import com.github.ferstl.junit.testgroups.TestGroupRule;
 
 public class SubPackageTest {
 
+  @ClassRule
+  public static TestGroupRule rule = TestGroupRule.create();
+
   @Test
   public void test() {}
 }